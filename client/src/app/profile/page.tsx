@@ -92,7 +92,7 @@ const ProfilePage = () => {
     setDeletingFiles((prev) => new Set(prev).add(fileId));
 
     try {
-      const response = await apiRequest(`/file/${fileId}`, {
+      const response = await apiRequest(`/api/files/${fileId}`, {
         method: "DELETE",
       });
 
@@ -0,0 +1,169 @@
+package com.sharex.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
+import com.sharex.repository.FileRepository;
+import com.sharex.repository.FileSummary;
+import com.sharex.service.DownloadCounterService;
+import com.sharex.service.DownloadGrantService;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Function;
+
+// Wires services the way Spring would, with in-memory stand-ins for the database so only our code is measured
+final class BenchmarkFixtures {
+
+    static final String USER_ID = "user-1";
+
+    private BenchmarkFixtures() { }
+
+    static FileService fileService(FileRepository fileRepository, PasswordHashingService passwordHashingService,
+                                   DownloadGrantService downloadGrantService, FileMetadataCache fileMetadataCache) {
+        FileService fileService = new FileService();
+        ReflectionTestUtils.setField(fileService, "fileRepository", fileRepository);
+        ReflectionTestUtils.setField(fileService, "downloadCounterService", new DownloadCounterService());
+        ReflectionTestUtils.setField(fileService, "downloadGrantService", downloadGrantService);
+        ReflectionTestUtils.setField(fileService, "fileMetadataCache", fileMetadataCache);
+        ReflectionTestUtils.setField(fileService, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(fileService, "objectMapper", objectMapper());
+        ReflectionTestUtils.setField(fileService, "defaultPageSize", 50);
+        ReflectionTestUtils.setField(fileService, "maxPageSize", 200);
+        return fileService;
+    }
+
+    // Same settings Spring Boot applies to the ObjectMapper used by the controllers
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    // Implements a repository interface by method name, calls to anything else fail loudly
+    static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    Function<Object[], Object> answer = answers.get(method.getName());
+                    if (answer == null) {
+                        throw new UnsupportedOperationException(method.getName() + " is not stubbed");
+                    }
+                    return answer.apply(args);
+                }));
+    }
+
+    static FileSummary summary(int index) {
+        return new Summary(index);
+    }
+
+    static PlatformTransactionManager noOpTransactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) { }
+
+            @Override
+            public void rollback(TransactionStatus status) { }
+        };
+    }
+
+    static DownloadGrantService downloadGrantService() {
+        return new DownloadGrantService("benchmark-secret", Duration.ofMinutes(15));
+    }
+
+    private static final class Summary implements FileSummary {
+
+        private final int index;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private Summary(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getFileId() {
+            return "file-" + index;
+        }
+
+        @Override
+        public String getOriginalFileName() {
+            return "report-" + index + ".pdf";
+        }
+
+        @Override
+        public String getUserId() {
+            return USER_ID;
+        }
+
+        @Override
+        public Long getSizeBytes() {
+            return 1024L * (index + 1);
+        }
+
+        @Override
+        public Boolean getPasswordProtected() {
+            return index % 3 == 0;
+        }
+
+        @Override
+        public Integer getDownloadLimit() {
+            return index % 2 == 0 ? 100 : null;
+        }
+
+        @Override
+        public Integer getDownloadCount() {
+            return index;
+        }
+
+        @Override
+        public LocalDateTime getExpiryDate() {
+            return createdAt.plusDays(7);
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public ProcessingStatus getProcessingStatus() {
+            return ProcessingStatus.COMPLETE;
+        }
+
+        @Override
+        public Boolean getChecksumVerified() {
+            return true;
+        }
+
+        @Override
+        public ScanResult getScanResult() {
+            return ScanResult.NOT_SCANNED;
+        }
+
+        @Override
+        public String getMimeType() {
+            return "application/pdf";
+        }
+
+        @Override
+        public Boolean getPreviewAvailable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sharex.benchmark;
+
+import com.sharex.model.FileData;
+import com.sharex.repository.FileRepository;
+import com.sharex.service.DownloadGrantService;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// "password" pays for a BCrypt comparison on every call, "grant" is the signed-token shortcut around it
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileAccessBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"open", "password", "grant"})
+    public String protection;
+
+    private PasswordHashingService passwordHashingService;
+    private FileService fileService;
+    private FileData fileData;
+    private String password;
+    private String grant;
+
+    @Setup
+    public void setUp() {
+        passwordHashingService = new PasswordHashingService(0, 1024, Duration.ofSeconds(5));
+        DownloadGrantService downloadGrantService = BenchmarkFixtures.downloadGrantService();
+        fileService = BenchmarkFixtures.fileService(BenchmarkFixtures.stub(FileRepository.class, Map.of()),
+                passwordHashingService, downloadGrantService, new FileMetadataCache(100, Duration.ofMinutes(1)));
+
+        fileData = new FileData("file-1", "report.pdf", "blob-1", 1024, BenchmarkFixtures.USER_ID);
+        fileData.setDownloadLimit(100);
+        fileData.setExpiryDate(LocalDateTime.now().plusDays(7));
+        if (!"open".equals(protection)) {
+            fileData.setPasswordHash(new BCryptPasswordEncoder().encode(PASSWORD));
+        }
+        password = "password".equals(protection) ? PASSWORD : null;
+        grant = "grant".equals(protection) ? downloadGrantService.issue(fileData) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Benchmark
+    public boolean validateFileAccess() {
+        return fileService.validateFileAccess(fileData, password, grant);
+    }
+}
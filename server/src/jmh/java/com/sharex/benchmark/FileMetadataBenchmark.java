@@ -0,0 +1,71 @@
+package com.sharex.benchmark;
+
+import com.sharex.dto.FileMetadataResponse;
+import com.sharex.repository.FileRepository;
+import com.sharex.repository.FileSummary;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// "miss" drops the cached entry before every lookup, so it includes the load and the cache insert
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileMetadataBenchmark {
+
+    private static final String FILE_ID = "file-1";
+
+    @Param({"hit", "miss"})
+    public String cache;
+
+    private PasswordHashingService passwordHashingService;
+    private FileMetadataCache fileMetadataCache;
+    private FileService fileService;
+    private boolean miss;
+
+    @Setup
+    public void setUp() {
+        Optional<FileSummary> summary = Optional.of(BenchmarkFixtures.summary(1));
+        FileRepository fileRepository = BenchmarkFixtures.stub(FileRepository.class,
+                Map.of("findSummaryById", args -> summary));
+
+        passwordHashingService = new PasswordHashingService(1, 16, Duration.ofSeconds(1));
+        fileMetadataCache = new FileMetadataCache(10_000, Duration.ofMinutes(5));
+        fileService = BenchmarkFixtures.fileService(fileRepository, passwordHashingService,
+                BenchmarkFixtures.downloadGrantService(), fileMetadataCache);
+        miss = "miss".equals(cache);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Benchmark
+    public FileMetadataResponse getFileMetadata() {
+        if (miss) {
+            fileMetadataCache.invalidate(FILE_ID);
+        }
+        return fileService.getFileMetadata(FILE_ID);
+    }
+}
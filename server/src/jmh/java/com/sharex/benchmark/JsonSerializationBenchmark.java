@@ -0,0 +1,73 @@
+package com.sharex.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sharex.dto.FileMetadataResponse;
+import com.sharex.dto.UserFileResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private FileMetadataResponse metadata;
+    private UserFileResponse userFile;
+    private List<UserFileResponse> userFiles;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkFixtures.objectMapper();
+        LocalDateTime now = LocalDateTime.now();
+        metadata = FileMetadataResponse.builder()
+                .fileId("file-1")
+                .originalFileName("quarterly-report.pdf")
+                .fileSize(3_481_120)
+                .userId(BenchmarkFixtures.USER_ID)
+                .hasPassword(true)
+                .downloadLimit(100)
+                .downloadCount(42)
+                .expiryDate(now.plusDays(7))
+                .createdAt(now);
+        userFile = userFile(1, now);
+        userFiles = IntStream.range(0, 100).mapToObj(index -> userFile(index, now)).toList();
+    }
+
+    @Benchmark
+    public byte[] fileMetadataResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(metadata);
+    }
+
+    @Benchmark
+    public byte[] userFileResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userFile);
+    }
+
+    @Benchmark
+    public byte[] userFileListing() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userFiles);
+    }
+
+    private static UserFileResponse userFile(int index, LocalDateTime now) {
+        return new UserFileResponse("file-" + index, "report-" + index + ".pdf", index % 3 == 0,
+                index % 2 == 0 ? 100 : null, index, now.plusDays(7), now);
+    }
+}
@@ -0,0 +1,96 @@
+package com.sharex.benchmark;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.repository.ContentBlobRepository;
+import com.sharex.service.ContentService;
+import com.sharex.service.HotContentCache;
+import com.sharex.storage.FileSystemBlobStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Hashing, optional gzip and the write to local disk for one upload, the blob is deleted again after each call
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class UploadIngestionBenchmark {
+
+    @Param({"4096", "1048576", "16777216"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private Path root;
+    private FileSystemBlobStore blobStore;
+    private ContentService contentService;
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("sharex-benchmark");
+        blobStore = new FileSystemBlobStore(root.toString(), DataSize.ofKilobytes(64));
+        ContentBlobRepository contentBlobRepository = BenchmarkFixtures.stub(ContentBlobRepository.class, Map.of(
+                "incrementRefCount", args -> 0,
+                "saveAndFlush", args -> args[0]));
+
+        contentService = new ContentService();
+        ReflectionTestUtils.setField(contentService, "blobStore", blobStore);
+        ReflectionTestUtils.setField(contentService, "contentBlobRepository", contentBlobRepository);
+        ReflectionTestUtils.setField(contentService, "transactionTemplate",
+                new TransactionTemplate(BenchmarkFixtures.noOpTransactionManager()));
+        ReflectionTestUtils.setField(contentService, "hotContentCache",
+                new HotContentCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64)));
+        ReflectionTestUtils.setField(contentService, "compressionLevel", 1);
+        ReflectionTestUtils.setField(contentService, "compressionSampleSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(contentService, "compressionMaxRatio", 0.9);
+
+        content = csv(size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public ContentBlob store() throws IOException {
+        ContentBlob blob = contentService.store(new ByteArrayInputStream(content), compress);
+        blobStore.delete(blob.getStorageKey());
+        return blob;
+    }
+
+    // Text that compresses about as well as a typical log or CSV export, so the gzip path is actually taken
+    private static byte[] csv(int size) {
+        StringBuilder text = new StringBuilder(size + 64);
+        for (int row = 0; text.length() < size; row++) {
+            text.append(row).append(",user-").append(row % 97).append(",report-").append(row * 31 % 1009)
+                    .append(".pdf,").append(row * 7919L % 1_000_003).append('\n');
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+}
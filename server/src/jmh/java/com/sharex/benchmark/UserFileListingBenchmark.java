@@ -0,0 +1,63 @@
+package com.sharex.benchmark;
+
+import com.sharex.dto.UserFileResponse;
+import com.sharex.repository.FileRepository;
+import com.sharex.repository.FileSummary;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Row mapping of the profile listing, the repository hands back ready-made projections
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserFileListingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private PasswordHashingService passwordHashingService;
+    private FileService fileService;
+
+    @Setup
+    public void setUp() {
+        List<FileSummary> summaries = IntStream.range(0, rows).mapToObj(BenchmarkFixtures::summary).toList();
+        FileRepository fileRepository = BenchmarkFixtures.stub(FileRepository.class,
+                Map.of("findSummariesByUserId", args -> summaries));
+
+        passwordHashingService = new PasswordHashingService(1, 16, Duration.ofSeconds(1));
+        fileService = BenchmarkFixtures.fileService(fileRepository, passwordHashingService,
+                BenchmarkFixtures.downloadGrantService(), new FileMetadataCache(100, Duration.ofMinutes(1)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Benchmark
+    public List<UserFileResponse> getUserFilesForProfile() {
+        return fileService.getUserFilesForProfile(BenchmarkFixtures.USER_ID);
+    }
+}
@@ -0,0 +1,49 @@
+package com.sharex.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies of successful requests in microseconds; failures are only counted, so they cannot flatter the percentiles
+final class EndpointStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    void record(long elapsedNanos, ShareXClient.Result result) {
+        if (result.isSuccess()) {
+            recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+            successes.increment();
+            bytes.add(result.bytes);
+        } else {
+            failures.increment();
+        }
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    // Everything recorded since the previous call
+    Histogram takeHistogram() {
+        return recorder.getIntervalHistogram();
+    }
+
+    long getSuccessCount() {
+        return successes.sum();
+    }
+
+    long getFailureCount() {
+        return failures.sum();
+    }
+
+    long getBytes() {
+        return bytes.sum();
+    }
+}
@@ -0,0 +1,76 @@
+package com.sharex.loadtest;
+
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Everything is read from loadtest.* system properties, the loadtest Maven profile passes its defaults through
+final class LoadTestConfig {
+
+    // Base URL of a running server, blank boots the application in-process
+    final String target;
+    // Spring profile for the in-process server, "test" is H2, blank uses application.yml and local PostgreSQL
+    final String springProfile;
+    // Extra --key=value arguments for the in-process server, comma separated
+    final List<String> serverArgs;
+    final int concurrency;
+    final int users;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int hotFiles;
+    final int coldFiles;
+    final WeightedChoice<Integer> fileSizes;
+    final WeightedChoice<Operation> mix;
+    // Bytes per second each download-slow client reads
+    final int slowReadRate;
+    final Path output;
+
+    private final Map<String, String> raw = new LinkedHashMap<>();
+
+    private LoadTestConfig() {
+        this.target = property("target", "");
+        this.springProfile = property("spring-profile", "test");
+        this.serverArgs = Arrays.stream(property("server-args", "").split(","))
+                .map(String::trim)
+                .filter(arg -> !arg.isEmpty())
+                .toList();
+        this.concurrency = Integer.parseInt(property("concurrency", "32"));
+        this.users = Integer.parseInt(property("users", "8"));
+        this.warmupSeconds = Integer.parseInt(property("warmup-seconds", "15"));
+        this.durationSeconds = Integer.parseInt(property("duration-seconds", "60"));
+        this.hotFiles = Integer.parseInt(property("hot-files", "16"));
+        this.coldFiles = Integer.parseInt(property("cold-files", "100"));
+        this.fileSizes = WeightedChoice.parse(property("file-sizes", "4KB:40,64KB:30,1MB:20,16MB:10"),
+                size -> Math.toIntExact(DataSize.parse(size).toBytes()));
+        this.mix = WeightedChoice.parse(property("mix",
+                "download-hot:40,download-cold:15,metadata:30,upload:10,login:5"), Operation::fromKey);
+        this.slowReadRate = Math.toIntExact(DataSize.parse(property("slow-read-rate", "64KB")).toBytes());
+        this.output = Paths.get(property("output", "target/loadtest"));
+
+        if (concurrency < 1 || users < 1 || hotFiles < 1 || coldFiles < 1 || durationSeconds < 1
+                || slowReadRate < 1) {
+            throw new IllegalArgumentException("concurrency, users, hot-files, cold-files, duration-seconds and "
+                    + "slow-read-rate must be positive");
+        }
+    }
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    // The effective settings, written next to the results so runs can be compared like for like
+    Map<String, String> asMap() {
+        return new LinkedHashMap<>(raw);
+    }
+
+    private String property(String name, String defaultValue) {
+        String value = System.getProperty("loadtest." + name, defaultValue).trim();
+        raw.put(name, value);
+        return value;
+    }
+}
@@ -0,0 +1,311 @@
+package com.sharex.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sharex.ShareXApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Closed-loop load test: each worker is a virtual thread that sends its next request as soon as the previous one
+// returns, picking the operation from the configured mix. Writes result.json plus one .hgrm file per operation.
+public final class LoadTestRunner {
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final int NONCE_LENGTH = 16;
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final LoadTestConfig config;
+    private final URI baseUri;
+    private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final List<String> usernames = new ArrayList<>();
+    private final List<ShareXClient> clients = new ArrayList<>();
+    private final List<String> hotFiles = new ArrayList<>();
+    private final List<String> coldFiles = new ArrayList<>();
+    private final Queue<OwnedFile> createdFiles = new ConcurrentLinkedQueue<>();
+    private final ShareXClient loginClient;
+    private byte[] pool;
+
+    private LoadTestRunner(LoadTestConfig config, URI baseUri) {
+        this.config = config;
+        this.baseUri = baseUri;
+        this.loginClient = new ShareXClient(baseUri, httpExecutor, false);
+        for (Operation operation : config.mix.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        ConfigurableApplicationContext context = null;
+        URI baseUri;
+        if (config.target.isEmpty()) {
+            context = startServer(config);
+            baseUri = URI.create("http://localhost:"
+                    + context.getEnvironment().getRequiredProperty("local.server.port"));
+        } else {
+            baseUri = URI.create(config.target);
+        }
+
+        try {
+            new LoadTestRunner(config, baseUri).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startServer(LoadTestConfig config) {
+        SpringApplication application = new SpringApplication(ShareXApplication.class);
+        if (!config.springProfile.isEmpty()) {
+            application.setAdditionalProfiles(config.springProfile);
+        }
+        // The test profile logs every SQL statement, which would turn the run into a logging benchmark
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.sharex=INFO",
+                "--logging.level.org.springframework.security=INFO",
+                "--logging.level.org.hibernate.SQL=INFO"));
+        args.addAll(config.serverArgs);
+        return application.run(args.toArray(new String[0]));
+    }
+
+    private void run() throws Exception {
+        pool = new byte[config.fileSizes.values().stream().mapToInt(Integer::intValue).max().orElse(0)];
+        new Random(42).nextBytes(pool);
+
+        try {
+            System.out.printf("Seeding %d users, %d hot and %d cold files on %s%n",
+                    config.users, config.hotFiles, config.coldFiles, baseUri);
+            registerUsers();
+            hotFiles.addAll(seedFiles(config.hotFiles, 1));
+            coldFiles.addAll(seedFiles(config.coldFiles, 2));
+
+            System.out.printf("Running %d workers: %ds warmup, %ds measured%n",
+                    config.concurrency, config.warmupSeconds, config.durationSeconds);
+            long measureStart = System.nanoTime() + config.warmupSeconds * 1_000_000_000L;
+            long deadline = measureStart + config.durationSeconds * 1_000_000_000L;
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < config.concurrency; i++) {
+                    int worker = i;
+                    workers.submit(() -> work(worker, measureStart, deadline));
+                }
+            }
+            report(System.nanoTime() - measureStart);
+        } finally {
+            cleanUp();
+            httpExecutor.close();
+        }
+    }
+
+    private void registerUsers() throws IOException, InterruptedException {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        for (int i = 0; i < config.users; i++) {
+            String username = "lt-" + runId + "-" + i;
+            ShareXClient client = new ShareXClient(baseUri, httpExecutor, true);
+            ShareXClient.Result registered = client.register(username, PASSWORD);
+            if (!registered.isSuccess()) {
+                throw new IllegalStateException("Could not register " + username + ": " + registered.body);
+            }
+            usernames.add(username);
+            clients.add(client);
+        }
+    }
+
+    // Seed uploads run in parallel but are not recorded, files are spread round-robin over the users
+    private List<String> seedFiles(int count, long seed) throws InterruptedException, ExecutionException {
+        Random random = new Random(seed);
+        List<Callable<String>> uploads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int owner = i % clients.size();
+            int size = config.fileSizes.next(random);
+            byte[] nonce = nonce();
+            uploads.add(() -> {
+                ShareXClient.Result uploaded = clients.get(owner).upload(nonce, pool, size);
+                if (!uploaded.isSuccess()) {
+                    throw new IllegalStateException("Seed upload failed: " + uploaded.body);
+                }
+                String fileId = clients.get(owner).fileId(uploaded);
+                createdFiles.add(new OwnedFile(owner, fileId));
+                return fileId;
+            });
+        }
+
+        List<String> fileIds = new ArrayList<>();
+        try (ExecutorService seeders = Executors.newFixedThreadPool(Math.min(config.concurrency, 8),
+                Thread.ofVirtual().factory())) {
+            for (Future<String> upload : seeders.invokeAll(uploads)) {
+                fileIds.add(upload.get());
+            }
+        }
+        return fileIds;
+    }
+
+    private void work(int worker, long measureStart, long deadline) {
+        Random random = new Random(worker);
+        int user = worker % clients.size();
+        while (System.nanoTime() < deadline) {
+            Operation operation = config.mix.next(random);
+            long start = System.nanoTime();
+            boolean measured = start >= measureStart;
+            try {
+                ShareXClient.Result result = execute(operation, user, random);
+                if (measured) {
+                    long end = result.servedAt > 0 ? result.servedAt : System.nanoTime();
+                    stats.get(operation).record(end - start, result);
+                }
+            } catch (IOException e) {
+                if (measured) {
+                    stats.get(operation).recordFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private ShareXClient.Result execute(Operation operation, int user, Random random)
+            throws IOException, InterruptedException {
+        ShareXClient client = clients.get(user);
+        switch (operation) {
+            case DOWNLOAD_HOT:
+                return client.download(pick(hotFiles, random));
+            case DOWNLOAD_COLD:
+                return client.download(pick(coldFiles, random));
+            case DOWNLOAD_SLOW:
+                return client.slowDownload(pick(hotFiles, random), config.slowReadRate);
+            case METADATA:
+                return client.metadata(pick(random.nextBoolean() ? hotFiles : coldFiles, random));
+            case UPLOAD:
+                ShareXClient.Result uploaded = client.upload(nonce(), pool, config.fileSizes.next(random));
+                if (uploaded.isSuccess()) {
+                    createdFiles.add(new OwnedFile(user, client.fileId(uploaded)));
+                }
+                return uploaded;
+            case LOGIN:
+                // Sessionless client, so the workers' own sessions are not rotated underneath them
+                return loginClient.login(usernames.get(user), PASSWORD);
+            default:
+                throw new IllegalArgumentException("Unsupported operation " + operation);
+        }
+    }
+
+    private void report(long measuredNanos) throws IOException {
+        Files.createDirectories(config.output);
+        double seconds = measuredNanos / 1e9;
+
+        System.out.printf("%n%-14s %9s %7s %10s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "ok", "failed", "req/s", "MB/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+            String key = entry.getKey().key();
+            EndpointStats endpoint = entry.getValue();
+            Histogram histogram = endpoint.takeHistogram();
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(config.output.resolve(key + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("mean", histogram.getMean() / MICROS_PER_MILLI);
+            latency.put("p50", percentile(histogram, 50.0));
+            latency.put("p90", percentile(histogram, 90.0));
+            latency.put("p99", percentile(histogram, 99.0));
+            latency.put("p99.9", percentile(histogram, 99.9));
+            latency.put("max", histogram.getMaxValue() / MICROS_PER_MILLI);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("successCount", endpoint.getSuccessCount());
+            summary.put("failureCount", endpoint.getFailureCount());
+            summary.put("requestsPerSecond", endpoint.getSuccessCount() / seconds);
+            summary.put("megabytesPerSecond", endpoint.getBytes() / BYTES_PER_MB / seconds);
+            summary.put("latencyMs", latency);
+            endpoints.put(key, summary);
+
+            System.out.printf("%-14s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", key,
+                    endpoint.getSuccessCount(), endpoint.getFailureCount(), endpoint.getSuccessCount() / seconds,
+                    endpoint.getBytes() / BYTES_PER_MB / seconds, latency.get("p50"), latency.get("p90"),
+                    latency.get("p99"), latency.get("p99.9"), latency.get("max"));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("finishedAt", Instant.now().toString());
+        result.put("target", baseUri.toString());
+        result.put("measuredSeconds", seconds);
+        result.put("config", config.asMap());
+        result.put("endpoints", endpoints);
+        new ObjectMapper().writerWithDefaultPrettyPrinter()
+                .writeValue(config.output.resolve("result.json").toFile(), result);
+        System.out.println("Results written to " + config.output.toAbsolutePath());
+    }
+
+    // Removes everything the run uploaded, so repeated runs against a shared server do not pile up blobs
+    private void cleanUp() {
+        int failed = 0;
+        for (OwnedFile file : createdFiles) {
+            try {
+                if (!clients.get(file.owner).delete(file.fileId).isSuccess()) {
+                    failed++;
+                }
+            } catch (IOException e) {
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (failed > 0) {
+            System.err.println("Could not delete " + failed + " uploaded files");
+        }
+    }
+
+    private static double percentile(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static String pick(List<String> fileIds, Random random) {
+        return fileIds.get(random.nextInt(fileIds.size()));
+    }
+
+    // Not seeded, so a rerun never uploads content an earlier run left behind and deduplication stays out of it
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        ThreadLocalRandom.current().nextBytes(nonce);
+        return nonce;
+    }
+
+    private static final class OwnedFile {
+
+        private final int owner;
+        private final String fileId;
+
+        private OwnedFile(int owner, String fileId) {
+            this.owner = owner;
+            this.fileId = fileId;
+        }
+    }
+}
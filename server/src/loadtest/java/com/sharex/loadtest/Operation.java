@@ -0,0 +1,34 @@
+package com.sharex.loadtest;
+
+enum Operation {
+
+    // Downloads from a small set of files that stay in the hot content cache and page cache
+    DOWNLOAD_HOT("download-hot"),
+    // Downloads spread over many files, so most requests miss the in-process caches
+    DOWNLOAD_COLD("download-cold"),
+    // Hot-file downloads read at slow-read-rate like a phone on a weak link; recorded latency is the time to the
+    // response headers, that is how long the connection waited for a request thread
+    DOWNLOAD_SLOW("download-slow"),
+    METADATA("metadata"),
+    UPLOAD("upload"),
+    LOGIN("login");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + key);
+    }
+}
@@ -0,0 +1,155 @@
+package com.sharex.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// One simulated user: its own cookie jar, so the Spring Session cookie from login is sent on later requests
+final class ShareXClient {
+
+    private static final String BOUNDARY = "sharex-loadtest-7d1f0c";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+    private static final int SLOW_READ_CHUNK = 8 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http;
+    private final URI baseUri;
+
+    ShareXClient(URI baseUri, Executor executor, boolean keepSession) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .executor(executor)
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10));
+        if (keepSession) {
+            builder.cookieHandler(new CookieManager());
+        }
+        this.http = builder.build();
+        this.baseUri = baseUri;
+    }
+
+    Result register(String username, String password) throws IOException, InterruptedException {
+        return postJson("/api/users/register",
+                Map.of("username", username, "email", username + "@loadtest.local", "password", password));
+    }
+
+    Result login(String username, String password) throws IOException, InterruptedException {
+        return postJson("/api/users/login", Map.of("username", username, "password", password));
+    }
+
+    // The nonce makes every upload distinct content, otherwise deduplication would turn uploads into no-ops
+    Result upload(byte[] nonce, byte[] pool, int size) throws IOException, InterruptedException {
+        int bodyLength = Math.max(0, size - nonce.length);
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        BodyPublisher body = BodyPublishers.concat(
+                BodyPublishers.ofByteArray(head),
+                BodyPublishers.ofByteArray(nonce, 0, Math.min(nonce.length, size)),
+                BodyPublishers.ofByteArray(pool, 0, bodyLength),
+                BodyPublishers.ofByteArray(tail));
+
+        HttpRequest request = request("/api/files/upload")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(body)
+                .build();
+        HttpResponse<String> response = http.send(request, BodyHandlers.ofString());
+        return new Result(response.statusCode(), Math.min(nonce.length, size) + bodyLength, response.body());
+    }
+
+    Result download(String fileId) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = http.send(request("/api/files/download/" + fileId).GET().build(),
+                BodyHandlers.ofInputStream());
+        try (InputStream in = response.body()) {
+            return new Result(response.statusCode(), in.transferTo(OutputStream.nullOutputStream()), null);
+        }
+    }
+
+    // Paces reads to bytesPerSecond, so the server has to keep the response open for the whole transfer
+    Result slowDownload(String fileId, int bytesPerSecond) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = http.send(request("/api/files/download/" + fileId).GET().build(),
+                BodyHandlers.ofInputStream());
+        long headersAt = System.nanoTime();
+        byte[] buffer = new byte[SLOW_READ_CHUNK];
+        long received = 0;
+        try (InputStream in = response.body()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received += read;
+                long ahead = headersAt + received * 1_000_000_000L / bytesPerSecond - System.nanoTime();
+                if (ahead > 0) {
+                    TimeUnit.NANOSECONDS.sleep(ahead);
+                }
+            }
+        }
+        return new Result(response.statusCode(), received, null, headersAt);
+    }
+
+    Result metadata(String fileId) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request("/api/files/" + fileId + "/metadata").GET().build(),
+                BodyHandlers.ofString());
+        return new Result(response.statusCode(), response.body().length(), response.body());
+    }
+
+    Result delete(String fileId) throws IOException, InterruptedException {
+        HttpResponse<Void> response = http.send(request("/api/files/" + fileId).DELETE().build(),
+                BodyHandlers.discarding());
+        return new Result(response.statusCode(), 0, null);
+    }
+
+    String fileId(Result uploaded) throws IOException {
+        return objectMapper.readTree(uploaded.body).path("fileId").asText();
+    }
+
+    private Result postJson(String path, Map<String, String> payload) throws IOException, InterruptedException {
+        HttpRequest request = request(path)
+                .header("Content-Type", "application/json")
+                .POST(BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                .build();
+        HttpResponse<String> response = http.send(request, BodyHandlers.ofString());
+        return new Result(response.statusCode(), 0, response.body());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    static final class Result {
+
+        final int status;
+        final long bytes;
+        final String body;
+        // System.nanoTime() at which the request counts as served, 0 when that is once the body has been read
+        final long servedAt;
+
+        Result(int status, long bytes, String body) {
+            this(status, bytes, body, 0);
+        }
+
+        Result(int status, long bytes, String body, long servedAt) {
+            this.status = status;
+            this.bytes = bytes;
+            this.body = body;
+            this.servedAt = servedAt;
+        }
+
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sharex.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+// Parsed from "a:40,b:60", picks values in proportion to their weights
+final class WeightedChoice<T> {
+
+    private final List<T> values = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    private WeightedChoice(List<T> values, List<Integer> weights) {
+        this.values.addAll(values);
+        this.cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+        this.totalWeight = total;
+    }
+
+    static <T> WeightedChoice<T> parse(String spec, Function<String, T> parser) {
+        List<T> values = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected value:weight but got '" + entry + "'");
+            }
+            int weight = Integer.parseInt(entry.substring(separator + 1).trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in '" + entry + "'");
+            }
+            if (weight > 0) {
+                values.add(parser.apply(entry.substring(0, separator).trim()));
+                weights.add(weight);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("No positive weights in '" + spec + "'");
+        }
+        return new WeightedChoice<>(values, weights);
+    }
+
+    T next(Random random) {
+        int point = random.nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return values.get(i);
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    List<T> values() {
+        return List.copyOf(values);
+    }
+}
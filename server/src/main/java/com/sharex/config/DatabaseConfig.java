@@ -0,0 +1,41 @@
+package com.sharex.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class DatabaseConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    // Static so the post-processor is registered before the data source is created
+    @Bean
+    public static BeanPostProcessor databaseConcurrencyLimit(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource
+                        || !environment.getProperty("sharex.database.limit-enabled", Boolean.class, true)) {
+                    return bean;
+                }
+                int maxConcurrency = environment.getProperty("sharex.database.max-concurrency", Integer.class, 0);
+                return new ConcurrencyLimitedDataSource(dataSource,
+                        maxConcurrency > 0 ? maxConcurrency : poolSize(dataSource),
+                        environment.getProperty("sharex.database.max-waiting", Integer.class, 1000),
+                        environment.getProperty("sharex.database.acquire-timeout", Duration.class,
+                                Duration.ofSeconds(5)),
+                        environment.getProperty("sharex.database.retry-after", Duration.class, Duration.ofSeconds(1)));
+            }
+        };
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        return dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+    }
+}
@@ -0,0 +1,17 @@
+package com.sharex.config;
+
+import java.sql.SQLTransientConnectionException;
+
+public class DatabaseOverloadedException extends SQLTransientConnectionException {
+
+    private final long retryAfterSeconds;
+
+    public DatabaseOverloadedException(long retryAfterSeconds) {
+        super("Database busy, try again later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,210 @@
+package com.sharex.config;
+
+import com.sharex.model.ProcessingStage;
+import com.sharex.service.AuthTokenService;
+import com.sharex.service.ContentService;
+import com.sharex.service.ContentTransferService;
+import com.sharex.service.ExpiryReaper;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.HotContentCache;
+import com.sharex.service.PasswordHashingService;
+import com.sharex.service.PreviewService;
+import com.sharex.service.SessionNearCache;
+import com.sharex.service.UploadProcessingPipeline;
+import com.sharex.storage.SegmentBlobStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+// Services keep their own lock-free counters, these binders only read them when a registry is scraped, so the hot
+// paths never touch Micrometer. Request timers, repository timers and Hikari pool metrics come from Spring Boot.
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder passwordHashingMetrics(PasswordHashingService passwordHashingService) {
+        return registry -> {
+            FunctionTimer.builder("sharex.password.hashing", passwordHashingService,
+                            PasswordHashingService::getCompletedCount, PasswordHashingService::getTotalHashNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Time spent in BCrypt")
+                    .register(registry);
+            FunctionTimer.builder("sharex.password.hashing.wait", passwordHashingService,
+                            PasswordHashingService::getCompletedCount, PasswordHashingService::getTotalWaitNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Time hashing tasks spent queued for a thread")
+                    .register(registry);
+            Gauge.builder("sharex.password.hashing.queued", passwordHashingService,
+                            PasswordHashingService::getQueueDepth)
+                    .register(registry);
+            Gauge.builder("sharex.password.hashing.active", passwordHashingService,
+                            PasswordHashingService::getActiveCount)
+                    .register(registry);
+            FunctionCounter.builder("sharex.password.hashing.rejected", passwordHashingService,
+                            PasswordHashingService::getRejectedCount)
+                    .description("Hashing requests turned away with 503 because the queue was full")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder transferMetrics(ContentService contentService, ContentTransferService contentTransferService) {
+        return registry -> {
+            bytesCounter(registry, "sharex.upload.bytes", contentService, ContentService::getIngestedBytes);
+            bytesCounter(registry, "sharex.storage.written.bytes", contentService, ContentService::getWrittenBytes);
+            bytesCounter(registry, "sharex.download.bytes", contentTransferService,
+                    ContentTransferService::getServedBytes);
+        };
+    }
+
+    @Bean
+    public MeterBinder cacheMetrics(HotContentCache hotContentCache, FileMetadataCache fileMetadataCache,
+                                    SessionNearCache sessionNearCache, PreviewService previewService) {
+        return registry -> {
+            requests(registry, "sharex.cache.hot.content.requests", hotContentCache,
+                    HotContentCache::getHitCount, HotContentCache::getMissCount);
+            FunctionCounter.builder("sharex.cache.hot.content.rejections", hotContentCache,
+                            HotContentCache::getRejectionCount)
+                    .register(registry);
+            Gauge.builder("sharex.cache.hot.content.size", hotContentCache, HotContentCache::getUsedBytes)
+                    .baseUnit(BaseUnits.BYTES)
+                    .register(registry);
+            Gauge.builder("sharex.cache.hot.content.entries", hotContentCache, HotContentCache::getEntryCount)
+                    .register(registry);
+
+            requests(registry, "sharex.cache.metadata.requests", fileMetadataCache,
+                    cache -> cache.stats().hitCount(), cache -> cache.stats().missCount());
+            FunctionCounter.builder("sharex.cache.metadata.evictions", fileMetadataCache,
+                            cache -> cache.stats().evictionCount())
+                    .register(registry);
+            Gauge.builder("sharex.cache.metadata.entries", fileMetadataCache, FileMetadataCache::size)
+                    .register(registry);
+
+            requests(registry, "sharex.cache.session.requests", sessionNearCache,
+                    SessionNearCache::getHitCount, SessionNearCache::getMissCount);
+            FunctionCounter.builder("sharex.cache.session.validations", sessionNearCache,
+                            SessionNearCache::getValidationCount)
+                    .register(registry);
+            Gauge.builder("sharex.cache.session.entries", sessionNearCache, SessionNearCache::getSize)
+                    .register(registry);
+
+            requests(registry, "sharex.cache.preview.requests", previewService,
+                    service -> service.stats().hitCount(), service -> service.stats().missCount());
+            Gauge.builder("sharex.cache.preview.entries", previewService, PreviewService::size)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder maintenanceMetrics(ExpiryReaper expiryReaper, AuthTokenService authTokenService,
+                                          ObjectProvider<SegmentBlobStore> segmentBlobStore) {
+        return registry -> {
+            FunctionCounter.builder("sharex.reaper.deleted.files", expiryReaper, ExpiryReaper::getDeletedFileCount)
+                    .register(registry);
+            bytesCounter(registry, "sharex.reaper.reclaimed.bytes", expiryReaper, ExpiryReaper::getReclaimedBytes);
+            FunctionCounter.builder("sharex.reaper.throttled.ticks", expiryReaper,
+                            ExpiryReaper::getThrottledTickCount)
+                    .register(registry);
+            Gauge.builder("sharex.reaper.lag", expiryReaper, ExpiryReaper::getLastLagMs)
+                    .baseUnit(BaseUnits.MILLISECONDS)
+                    .register(registry);
+            Gauge.builder("sharex.reaper.scheduled", expiryReaper, ExpiryReaper::getScheduledCount)
+                    .register(registry);
+            Gauge.builder("sharex.reaper.pending", expiryReaper, ExpiryReaper::getPendingCount)
+                    .register(registry);
+
+            Gauge.builder("sharex.auth.tokens.revoked", authTokenService, AuthTokenService::getRevokedCount)
+                    .register(registry);
+
+            segmentBlobStore.ifAvailable(store -> {
+                Gauge.builder("sharex.storage.segments", store, SegmentBlobStore::getSegmentCount)
+                        .register(registry);
+                Gauge.builder("sharex.storage.segments.stored", store, SegmentBlobStore::getStoredBytes)
+                        .baseUnit(BaseUnits.BYTES)
+                        .register(registry);
+                Gauge.builder("sharex.storage.segments.dead", store, SegmentBlobStore::getDeadBytes)
+                        .baseUnit(BaseUnits.BYTES)
+                        .register(registry);
+                FunctionCounter.builder("sharex.storage.segments.compacted", store,
+                                SegmentBlobStore::getCompactedSegmentCount)
+                        .register(registry);
+                bytesCounter(registry, "sharex.storage.segments.reclaimed.bytes", store,
+                        SegmentBlobStore::getReclaimedBytes);
+            });
+        };
+    }
+
+    @Bean
+    public MeterBinder concurrencyMetrics(DataSource dataSource,
+                                          ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                Gauge.builder("sharex.database.limit.active", limited, ConcurrencyLimitedDataSource::getActiveCount)
+                        .register(registry);
+                Gauge.builder("sharex.database.limit.max", limited, ConcurrencyLimitedDataSource::getMaxConcurrency)
+                        .register(registry);
+                Gauge.builder("sharex.database.limit.waiting", limited,
+                                ConcurrencyLimitedDataSource::getWaitingCount)
+                        .register(registry);
+                FunctionTimer.builder("sharex.database.limit.wait", limited,
+                                ConcurrencyLimitedDataSource::getAcquiredCount,
+                                ConcurrencyLimitedDataSource::getTotalWaitNanos, TimeUnit.NANOSECONDS)
+                        .description("Time spent queued for a database permit")
+                        .register(registry);
+                FunctionCounter.builder("sharex.database.limit.rejected", limited,
+                                ConcurrencyLimitedDataSource::getRejectedCount)
+                        .description("Connection requests turned away because too many were already queued")
+                        .register(registry);
+            }
+
+            pinningMonitor.ifAvailable(monitor -> FunctionTimer.builder("sharex.threads.virtual.pinned", monitor,
+                            VirtualThreadPinningMonitor::getPinnedCount,
+                            VirtualThreadPinningMonitor::getTotalPinnedNanos, TimeUnit.NANOSECONDS)
+                    .description("Virtual threads that stayed pinned to their carrier longer than the threshold")
+                    .register(registry));
+        };
+    }
+
+    @Bean
+    public MeterBinder processingMetrics(UploadProcessingPipeline pipeline) {
+        return registry -> {
+            for (ProcessingStage stage : ProcessingStage.values()) {
+                String tag = stage.name().toLowerCase();
+                Gauge.builder("sharex.processing.queued", pipeline, p -> p.getQueueDepth(stage))
+                        .tag("stage", tag)
+                        .register(registry);
+                FunctionCounter.builder("sharex.processing.completed", pipeline, p -> p.getCompletedCount(stage))
+                        .tag("stage", tag)
+                        .register(registry);
+                FunctionCounter.builder("sharex.processing.failed", pipeline, p -> p.getFailedCount(stage))
+                        .tag("stage", tag)
+                        .register(registry);
+            }
+            FunctionCounter.builder("sharex.processing.deferred", pipeline, UploadProcessingPipeline::getDeferredCount)
+                    .description("Submissions turned away by a full queue and left for the sweeper")
+                    .register(registry);
+        };
+    }
+
+    private static <T> void bytesCounter(MeterRegistry registry, String name, T source, ToDoubleFunction<T> bytes) {
+        FunctionCounter.builder(name, source, bytes)
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private static <T> void requests(MeterRegistry registry, String name, T cache, ToDoubleFunction<T> hits,
+                                     ToDoubleFunction<T> misses) {
+        FunctionCounter.builder(name, cache, hits).tag("result", "hit").register(registry);
+        FunctionCounter.builder(name, cache, misses).tag("result", "miss").register(registry);
+    }
+}
@@ -1,11 +1,16 @@
 package com.sharex.config;
 
+import com.sharex.service.AuthTokenService;
+import com.sharex.service.SessionService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -17,21 +22,29 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthTokenService authTokenService,
+                                           @Value("${sharex.auth.mode:session}") String authMode) throws Exception {
+        boolean tokenMode = "token".equalsIgnoreCase(authMode);
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(authz -> authz
                         .requestMatchers("/api/users/register", "/api/users/login", "/api/users/logout").permitAll()
-                        .requestMatchers("/api/files/download/**", "/api/files/*/metadata").permitAll()
+                        .requestMatchers("/api/files/download/**", "/api/files/*/metadata", "/api/files/*/grant",
+                                "/api/files/*/preview")
+                        .permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                         .anyRequest().permitAll()
                 )
                 .sessionManagement(session -> session
-                        .sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED)
-                        .maximumSessions(1)
-                        .maxSessionsPreventsLogin(false)
+                        .sessionCreationPolicy(tokenMode ? SessionCreationPolicy.STATELESS
+                                : SessionCreationPolicy.IF_REQUIRED)
             );
 
+        if (tokenMode) {
+            // Not a bean on purpose, so it only runs inside this chain and not as a second servlet filter
+            http.addFilterBefore(new TokenAuthenticationFilter(authTokenService), AuthorizationFilter.class);
+        }
+
         return http.build();
     }
 
@@ -41,6 +54,9 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.CONTENT_RANGE,
+                HttpHeaders.ACCEPT_RANGES, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER, "X-Download-Grant",
+                SessionService.AUTH_TOKEN_HEADER));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
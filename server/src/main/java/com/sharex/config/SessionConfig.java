@@ -1,9 +1,18 @@
 package com.sharex.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+import org.springframework.session.web.http.CookieHttpSessionIdResolver;
+import org.springframework.session.web.http.HttpSessionIdResolver;
 
 @Configuration
 @EnableJdbcHttpSession(maxInactiveIntervalInSeconds = 1800)
 public class SessionConfig {
+
+    // Exposed as a bean so SessionService can read the session id without loading the session
+    @Bean
+    public HttpSessionIdResolver httpSessionIdResolver() {
+        return new CookieHttpSessionIdResolver();
+    }
 } 
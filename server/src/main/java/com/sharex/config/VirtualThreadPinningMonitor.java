@@ -0,0 +1,110 @@
+package com.sharex.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// A virtual thread that blocks inside a synchronized block or a native frame keeps its carrier thread, and a few of
+// those stall every request. Streams the JDK's pinning events in-process, counts them and logs the stack the first
+// time each location pins.
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.sharex.";
+    private static final int MAX_LOGGED_LOCATIONS = 100;
+    private static final int MAX_LOGGED_FRAMES = 24;
+
+    private final Duration threshold;
+    private final Set<String> loggedLocations = ConcurrentHashMap.newKeySet();
+    private final LongAdder pinned = new LongAdder();
+    private final LongAdder totalPinnedNanos = new LongAdder();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(
+            @Value("${sharex.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stream.close();
+    }
+
+    public long getPinnedCount() {
+        return pinned.sum();
+    }
+
+    public long getTotalPinnedNanos() {
+        return totalPinnedNanos.sum();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        totalPinnedNanos.add(event.getDuration().toNanos());
+
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String location = location(frames);
+        if (loggedLocations.size() < MAX_LOGGED_LOCATIONS && loggedLocations.add(location)) {
+            LOG.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), location,
+                    format(event.getStackTrace()));
+        }
+    }
+
+    // The innermost application frame, that is where the synchronized block or native call has to be fixed
+    private static String location(List<RecordedFrame> frames) {
+        RecordedFrame chosen = null;
+        for (RecordedFrame frame : frames) {
+            if (frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                chosen = frame;
+                break;
+            }
+        }
+        if (chosen == null && !frames.isEmpty()) {
+            chosen = frames.get(0);
+        }
+        return chosen != null ? describe(chosen) : "unknown location";
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder formatted = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(frames.size(), MAX_LOGGED_FRAMES); i++) {
+            formatted.append(System.lineSeparator()).append("\tat ").append(describe(frames.get(i)));
+        }
+        return formatted.toString();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+                + frame.getLineNumber();
+    }
+}
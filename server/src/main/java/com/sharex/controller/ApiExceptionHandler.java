@@ -0,0 +1,37 @@
+package com.sharex.controller;
+
+import com.sharex.config.DatabaseOverloadedException;
+import com.sharex.service.PasswordHashingOverloadedException;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+// Overload responses shared by all controllers, so every endpoint answers 503 with Retry-After the same way.
+// Session lookups go through the JDBC session store, so they can end up here from any endpoint.
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<?> hashingOverloaded(PasswordHashingOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    // No connection could be had: the pool timed out or the concurrency limit turned the request away
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<?> databaseUnavailable(NestedRuntimeException e) {
+        long retryAfterSeconds = e.getMostSpecificCause() instanceof DatabaseOverloadedException overloaded
+                ? overloaded.getRetryAfterSeconds() : 1;
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", "Database busy, try again later"));
+    }
+}
@@ -1,27 +1,53 @@
 package com.sharex.controller;
 
 import com.sharex.dto.FileMetadataResponse;
+import com.sharex.dto.InitiateUploadRequest;
+import com.sharex.dto.UploadSessionResponse;
 import com.sharex.dto.UserFileResponse;
 import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.UploadSession;
+import com.sharex.service.ByteRange;
+import com.sharex.service.ChunkedUploadService;
+import com.sharex.service.ContentService;
+import com.sharex.service.ContentTransferService;
+import com.sharex.service.DownloadEvent;
+import com.sharex.service.DownloadReservation;
 import com.sharex.service.FileService;
+import com.sharex.service.Preview;
+import com.sharex.service.PreviewService;
 import com.sharex.service.SessionService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,18 +56,41 @@ import java.util.Optional;
 @RequestMapping("/api/files")
 public class FileController {
 
+    private static final Logger LOG = LoggerFactory.getLogger(FileController.class);
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String DOWNLOAD_GRANT_HEADER = "X-Download-Grant";
+    private static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-SHA256";
+
     @Autowired
     private FileService fileService;
 
     @Autowired
     private SessionService sessionService;
 
+    @Autowired
+    private ContentTransferService contentTransferService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    // A preview never changes for a given file, so clients may keep it until the file expires
+    @Value("${sharex.preview.max-age:7d}")
+    private Duration previewMaxAge;
+
+    @Value("${sharex.preview.retry-after:2s}")
+    private Duration previewRetryAfter;
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "password", required = false) String password,
             @RequestParam(value = "downloadLimit", required = false) Integer downloadLimit,
             @RequestParam(value = "expiryDate", required = false) String expiryDateStr,
+            @RequestParam(value = "compress", required = false) Boolean compress,
             HttpServletRequest request) {
 
         try {
@@ -56,18 +105,279 @@ public class FileController {
                 expiryDate = LocalDateTime.parse(expiryDateStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
             }
 
-            String fileId = fileService.uploadFile(file, userId, password, downloadLimit, expiryDate);
+            String fileId = fileService.uploadFile(file, userId, password, downloadLimit, expiryDate,
+                    compress);
             return ResponseEntity.ok(Map.of("fileId", fileId, "message", "File uploaded successfully"));
 
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(Map.of("error", "Failed to upload file: " + e.getMessage()));
-        } catch (Exception e) {
+        } catch (DateTimeParseException e) {
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid request: " + e.getMessage()));
         }
     }
 
+    @PostMapping("/uploads")
+    public ResponseEntity<?> initiateUpload(@Valid @RequestBody InitiateUploadRequest body,
+                                            HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        try {
+            UploadSession session = chunkedUploadService.initiate(sessionService.getCurrentUserId(request), body);
+            return ResponseEntity.ok(toUploadSessionResponse(session, List.of()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        Optional<UploadSession> sessionOpt =
+                chunkedUploadService.getSession(uploadId, sessionService.getCurrentUserId(request));
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            UploadSession session = sessionOpt.get();
+            return ResponseEntity.ok(toUploadSessionResponse(session, chunkedUploadService.receivedChunks(session)));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to read upload state"));
+        }
+    }
+
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader(value = CHUNK_CHECKSUM_HEADER, required = false) String checksum,
+            HttpServletRequest request) {
+
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        Optional<UploadSession> sessionOpt =
+                chunkedUploadService.getSession(uploadId, sessionService.getCurrentUserId(request));
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            chunkedUploadService.putChunk(sessionOpt.get(), index, request.getInputStream(), checksum);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to store chunk: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        Optional<UploadSession> sessionOpt =
+                chunkedUploadService.getSession(uploadId, sessionService.getCurrentUserId(request));
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            String fileId = chunkedUploadService.complete(sessionOpt.get());
+            return ResponseEntity.ok(Map.of("fileId", fileId, "message", "File uploaded successfully"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to upload file: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        Optional<UploadSession> sessionOpt =
+                chunkedUploadService.getSession(uploadId, sessionService.getCurrentUserId(request));
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            chunkedUploadService.abort(sessionOpt.get());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to abort upload: " + e.getMessage()));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/download/{fileId}")
     public ResponseEntity<?> downloadFile(
+            @PathVariable String fileId,
+            @RequestParam(value = "password", required = false) String password,
+            @RequestParam(value = "grant", required = false) String grantParam,
+            @RequestHeader(value = DOWNLOAD_GRANT_HEADER, required = false) String grantHeader,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        DownloadEvent event = new DownloadEvent(fileId);
+        event.start();
+        ResponseEntity<?> result = null;
+        try {
+            result = serveDownload(fileId, password, grantHeader != null ? grantHeader : grantParam, request,
+                    response, event);
+            return result;
+        } finally {
+            event.finish(result != null ? result.getStatusCode().value() : response.getStatus());
+        }
+    }
+
+    private ResponseEntity<?> serveDownload(String fileId, String password, String grant,
+                                            HttpServletRequest request, HttpServletResponse response,
+                                            DownloadEvent event) {
+        Optional<FileData> fileOpt = fileService.getFile(fileId);
+        event.lookedUp();
+        if (fileOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        FileData fileData = fileOpt.get();
+        boolean accessGranted = fileService.validateFileAccess(fileData, password, grant);
+        event.accessChecked();
+        if (!accessGranted) {
+            return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+        }
+
+        if (fileData.getStorageKey() == null) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to read file"));
+        }
+
+        long size = fileData.getSizeBytes();
+        String etag = "\"" + fileData.getFileId() + "\"";
+        long lastModified = fileData.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        List<ByteRange> ranges;
+        try {
+            ranges = contentTransferService.resolveRanges(request, size, etag, lastModified);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+
+        // Full downloads, and ranged ones that fetch the whole file anyway, take a slot from the download limit
+        // before any bytes are sent. So does a segment of a limited file without a counted grant: it pays for the
+        // whole download, and the grant it gets covers the remaining segments.
+        boolean wholeFile = ranges.isEmpty()
+                || ranges.size() == 1 && ranges.get(0).getStart() == 0 && ranges.get(0).getLength() == size;
+        boolean paysForSegments = !wholeFile && fileData.getDownloadLimit() != null
+                && !fileService.hasCountedDownloadGrant(fileData, grant);
+        DownloadReservation reservation = null;
+        if (wholeFile || paysForSegments) {
+            Optional<DownloadReservation> reservationOpt = fileService.reserveDownload(fileData);
+            if (reservationOpt.isEmpty()) {
+                return ResponseEntity.status(403).body(Map.of("error", "Download limit reached"));
+            }
+            reservation = reservationOpt.get();
+        }
+        event.reserved();
+
+        if (fileData.getPasswordHash() != null && !fileService.hasValidDownloadGrant(fileData, grant)) {
+            // The password was just checked, let follow-up range requests skip BCrypt
+            response.setHeader(DOWNLOAD_GRANT_HEADER, fileService.issueDownloadGrant(fileData));
+        }
+        if (paysForSegments) {
+            // Counted before the grant goes out, since a grant cannot be taken back if the transfer then fails
+            fileService.completeDownload(reservation);
+            event.counted();
+            response.setHeader(DOWNLOAD_GRANT_HEADER, fileService.issueCountedDownloadGrant(fileData));
+        }
+
+        // Gzip-stored files go out as stored when the client accepts gzip; ranges always address the original bytes
+        boolean gzipStored = ContentService.GZIP.equals(fileData.getContentEncoding());
+        boolean sendEncoded = gzipStored && ranges.isEmpty() && contentTransferService.acceptsGzip(request);
+        if (gzipStored) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (sendEncoded) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, ContentService.GZIP);
+            etag = "\"" + fileData.getFileId() + "-gzip\"";
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + fileData.getOriginalFileName() + "\"");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+        // A counted download must be on the wire before it is completed; sendfile would write it after we return
+        boolean sendfileAllowed = !wholeFile || fileData.getDownloadLimit() == null;
+        try {
+            if (ranges.isEmpty()) {
+                if (sendEncoded) {
+                    contentTransferService.transfer(fileData.getStorageKey(), 0, fileData.getStoredSizeBytes(),
+                            request, response, sendfileAllowed);
+                    event.transferred(fileData.getStoredSizeBytes());
+                } else if (gzipStored) {
+                    contentTransferService.transferDecoded(fileData.getStorageKey(), 0, size, response);
+                    event.transferred(size);
+                } else {
+                    contentTransferService.transfer(fileData.getStorageKey(), 0, size, request, response,
+                            sendfileAllowed);
+                    event.transferred(size);
+                }
+            } else if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+                if (gzipStored) {
+                    contentTransferService.transferDecoded(fileData.getStorageKey(), range.getStart(),
+                            range.getLength(), response);
+                } else {
+                    contentTransferService.transfer(fileData.getStorageKey(), range.getStart(), range.getLength(),
+                            request, response, sendfileAllowed);
+                }
+                event.transferred(range.getLength());
+            } else {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                contentTransferService.transferRanges(fileData.getStorageKey(), fileData.getContentEncoding(),
+                        ranges, size, MediaType.APPLICATION_OCTET_STREAM_VALUE, response);
+                event.transferred(ranges.stream().mapToLong(ByteRange::getLength).sum());
+            }
+            if (wholeFile) {
+                // Only a completed transfer of the whole file counts as a download
+                fileService.completeDownload(reservation);
+                event.counted();
+            }
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+                return ResponseEntity.status(500).body(Map.of("error", "Failed to read file"));
+            }
+        } finally {
+            if (reservation != null) {
+                reservation.release();
+            }
+        }
+
+        // The body has been written to (or handed off to sendfile on) the servlet response
+        return null;
+    }
+
+    @PostMapping("/{fileId}/grant")
+    public ResponseEntity<?> issueDownloadGrant(
             @PathVariable String fileId,
             @RequestParam(value = "password", required = false) String password) {
 
@@ -81,16 +391,59 @@ public class FileController {
             return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
         }
 
-        fileService.incrementDownloadCount(fileId);
+        return ResponseEntity.ok(Map.of(
+                "grant", fileService.issueDownloadGrant(fileData),
+                "expiresIn", fileService.getDownloadGrantTtl().toSeconds()));
+    }
 
-        ByteArrayResource resource = new ByteArrayResource(fileData.getContent());
+    @GetMapping("/{fileId}/preview")
+    public ResponseEntity<?> getPreview(
+            @PathVariable String fileId,
+            @RequestParam(value = "password", required = false) String password,
+            @RequestParam(value = "grant", required = false) String grantParam,
+            @RequestHeader(value = DOWNLOAD_GRANT_HEADER, required = false) String grantHeader,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        Optional<FileData> fileOpt = fileService.getFile(fileId);
+        if (fileOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        FileData fileData = fileOpt.get();
+        if (!fileService.validateFileAccess(fileData, password, grantHeader != null ? grantHeader : grantParam)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+        }
+
+        if (fileData.getPreviewKey() == null) {
+            if (previewService.isPreviewPending(fileData)) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, previewRetryAfter.toSeconds())))
+                        .body(Map.of("status", ProcessingStatus.PENDING.name()));
+            }
+            return ResponseEntity.status(404).body(Map.of("error", "No preview available"));
+        }
+
+        String etag = "\"" + fileData.getPreviewDigest() + "\"";
+        CacheControl cacheControl = previewCacheControl(fileData);
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+
+        Optional<Preview> preview;
+        try {
+            preview = previewService.getPreview(fileData);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to read preview"));
+        }
+        if (preview.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "No preview available"));
+        }
 
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                       "attachment; filename=\"" + fileData.getOriginalFileName() + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(fileData.getContent().length)
-                .body(resource);
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaType.parseMediaType(preview.get().getContentType()))
+                .body(preview.get().getContent());
     }
 
     @GetMapping("/{fileId}/metadata")
@@ -102,25 +455,81 @@ public class FileController {
         return ResponseEntity.ok(metadata);
     }
 
+    @DeleteMapping("/{fileId}")
+    public ResponseEntity<?> deleteFile(@PathVariable String fileId, HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
+
+        Optional<FileData> fileOpt = fileService.getFile(fileId);
+        if (fileOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        FileData fileData = fileOpt.get();
+        if (!fileData.getUserId().equals(sessionService.getCurrentUserId(request))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+        }
+
+        try {
+            if (fileService.deleteFile(fileData) < 0) {
+                // Deleted concurrently, e.g. by the expiry reaper
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to delete file: " + e.getMessage()));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/user")
-    public ResponseEntity<?> getUserFiles(HttpServletRequest request) {
+    public ResponseEntity<?> getUserFiles(HttpServletRequest request,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit) {
         try {
-            System.out.println("DEBUG: getUserFiles called");
             if (!sessionService.isUserAuthenticated(request)) {
-                System.out.println("DEBUG: User not authenticated");
                 return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
             }
 
             String userId = sessionService.getCurrentUserId(request);
-            System.out.println("DEBUG: User ID: " + userId);
+            if (cursor != null || limit != null) {
+                return ResponseEntity.ok(fileService.getUserFilesPage(userId, cursor, limit));
+            }
             List<UserFileResponse> files = fileService.getUserFilesForProfile(userId);
-            System.out.println("DEBUG: Files retrieved: " + files.size());
+            LOG.debug("Listed {} files for user {}", files.size(), userId);
             return ResponseEntity.ok(files);
 
-        } catch (Exception e) {
-            System.out.println("DEBUG: Exception in getUserFiles: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.badRequest().body(Map.of("error", "Failed to get user files"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+    }
+
+    @GetMapping(value = "/user", params = "stream=true", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamUserFiles(HttpServletRequest request) {
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).build();
         }
+
+        String userId = sessionService.getCurrentUserId(request);
+        StreamingResponseBody body = out -> fileService.streamUserFilesForProfile(userId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    // Shared caches only get previews of files without a password, and nobody keeps one past the file's expiry
+    private CacheControl previewCacheControl(FileData fileData) {
+        Duration maxAge = previewMaxAge;
+        if (fileData.getExpiryDate() != null) {
+            Duration remaining = Duration.between(LocalDateTime.now(), fileData.getExpiryDate());
+            maxAge = remaining.isNegative() ? Duration.ZERO : remaining.compareTo(maxAge) < 0 ? remaining : maxAge;
+        }
+        CacheControl cacheControl = CacheControl.maxAge(maxAge);
+        return fileData.getPasswordHash() != null ? cacheControl.cachePrivate() : cacheControl.cachePublic();
+    }
+
+    private UploadSessionResponse toUploadSessionResponse(UploadSession session, List<Integer> receivedChunks) {
+        return new UploadSessionResponse(session.getUploadId(), session.getSizeBytes(), session.getChunkSize(),
+                session.getChunkCount(), receivedChunks, session.getExpiresAt());
     }
 } 
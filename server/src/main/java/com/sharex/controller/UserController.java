@@ -5,6 +5,7 @@ import com.sharex.dto.RegisterRequest;
 import com.sharex.model.UserData;
 import com.sharex.service.FileService;
 import com.sharex.service.SessionService;
+import com.sharex.service.UserAccountException;
 import com.sharex.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -45,7 +46,7 @@ public class UserController {
             response.put("username", user.getUsername());
             
             return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
+        } catch (UserAccountException e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
@@ -64,7 +65,7 @@ public class UserController {
             response.put("username", user.getUsername());
             
             return ResponseEntity.ok(response);
-        } catch (RuntimeException e) {
+        } catch (UserAccountException e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
@@ -78,7 +79,8 @@ public class UserController {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Logout successful");
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        } catch (IllegalStateException e) {
+            // The session was invalidated by a concurrent request
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to logout");
             return ResponseEntity.badRequest().body(error);
@@ -87,33 +89,27 @@ public class UserController {
 
     @GetMapping("/profile")
     public ResponseEntity<?> getProfile(HttpServletRequest request) {
-        try {
-            if (!sessionService.isUserAuthenticated(request)) {
-                return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
-            }
+        if (!sessionService.isUserAuthenticated(request)) {
+            return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
+        }
 
-            String userId = sessionService.getCurrentUserId(request);
-            Optional<UserData> userOpt = userService.findByUserId(userId);
-            
-            if (userOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+        String userId = sessionService.getCurrentUserId(request);
+        Optional<UserData> userOpt = userService.findByUserId(userId);
+        
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
 
-            UserData user = userOpt.get();
-            long fileCount = fileService.getUserFileCount(user.getUserId());
+        UserData user = userOpt.get();
+        long fileCount = fileService.getUserFileCount(user.getUserId());
 
-            Map<String, Object> profile = new HashMap<>();
-            profile.put("userId", user.getUserId());
-            profile.put("username", user.getUsername());
-            profile.put("email", user.getEmail());
-            profile.put("createdAt", user.getCreatedAt());
-            profile.put("fileCount", fileCount);
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("userId", user.getUserId());
+        profile.put("username", user.getUsername());
+        profile.put("email", user.getEmail());
+        profile.put("createdAt", user.getCreatedAt());
+        profile.put("fileCount", fileCount);
 
-            return ResponseEntity.ok(profile);
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "Failed to get profile");
-            return ResponseEntity.badRequest().body(error);
-        }
+        return ResponseEntity.ok(profile);
     }
 } 
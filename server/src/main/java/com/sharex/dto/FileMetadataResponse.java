@@ -13,6 +13,11 @@ public class FileMetadataResponse {
     private Integer downloadCount;
     private LocalDateTime expiryDate;
     private LocalDateTime createdAt;
+    private String processingStatus;
+    private Boolean checksumVerified;
+    private String scanResult;
+    private String mimeType;
+    private boolean previewAvailable;
 
     public FileMetadataResponse() { }
 
@@ -73,6 +78,31 @@ public class FileMetadataResponse {
         return this;
     }
 
+    public FileMetadataResponse processingStatus(String status) {
+        this.processingStatus = status;
+        return this;
+    }
+
+    public FileMetadataResponse checksumVerified(Boolean verified) {
+        this.checksumVerified = verified;
+        return this;
+    }
+
+    public FileMetadataResponse scanResult(String result) {
+        this.scanResult = result;
+        return this;
+    }
+
+    public FileMetadataResponse mimeType(String type) {
+        this.mimeType = type;
+        return this;
+    }
+
+    public FileMetadataResponse previewAvailable(boolean available) {
+        this.previewAvailable = available;
+        return this;
+    }
+
     public String getFileId() {
         return fileId;
     }
@@ -144,4 +174,44 @@ public class FileMetadataResponse {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public String getProcessingStatus() {
+        return processingStatus;
+    }
+
+    public void setProcessingStatus(String processingStatus) {
+        this.processingStatus = processingStatus;
+    }
+
+    public Boolean getChecksumVerified() {
+        return checksumVerified;
+    }
+
+    public void setChecksumVerified(Boolean checksumVerified) {
+        this.checksumVerified = checksumVerified;
+    }
+
+    public String getScanResult() {
+        return scanResult;
+    }
+
+    public void setScanResult(String scanResult) {
+        this.scanResult = scanResult;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public boolean isPreviewAvailable() {
+        return previewAvailable;
+    }
+
+    public void setPreviewAvailable(boolean previewAvailable) {
+        this.previewAvailable = previewAvailable;
+    }
 } 
@@ -0,0 +1,32 @@
+package com.sharex.dto;
+
+import java.util.List;
+
+public class UserFilePageResponse {
+
+    private List<UserFileResponse> files;
+    private String nextCursor;
+
+    public UserFilePageResponse() { }
+
+    public UserFilePageResponse(List<UserFileResponse> files, String nextCursor) {
+        this.files = files;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserFileResponse> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<UserFileResponse> files) {
+        this.files = files;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,107 @@
+package com.sharex.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "content_blobs")
+public class ContentBlob {
+
+    @Id
+    @Column(name = "digest", length = 64)
+    private String digest;
+
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    // Null when the blob holds the content as is
+    @Column(name = "encoding", length = 16)
+    private String encoding;
+
+    @Column(name = "stored_size_bytes")
+    private Long storedSizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public ContentBlob() { }
+
+    public ContentBlob(String digest, String storageKey, long sizeBytes) {
+        this(digest, storageKey, sizeBytes, sizeBytes, null);
+    }
+
+    public ContentBlob(String digest, String storageKey, long sizeBytes, long storedSizeBytes, String encoding) {
+        this.digest = digest;
+        this.storageKey = storageKey;
+        this.sizeBytes = sizeBytes;
+        this.storedSizeBytes = storedSizeBytes;
+        this.encoding = encoding;
+        this.refCount = 1;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public long getStoredSizeBytes() {
+        return storedSizeBytes != null ? storedSizeBytes : sizeBytes;
+    }
+
+    public void setStoredSizeBytes(Long storedSizeBytes) {
+        this.storedSizeBytes = storedSizeBytes;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -2,13 +2,19 @@ package com.sharex.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+    @Index(name = "idx_files_user_created", columnList = "user_id, created_at, file_id"),
+    @Index(name = "idx_files_expiry_date", columnList = "expiry_date"),
+    @Index(name = "idx_files_processing_due", columnList = "processing_status, processing_next_attempt_at")
+})
 public class FileData {
     
     @Id
@@ -18,9 +24,21 @@ public class FileData {
     @Column(name = "original_file_name")
     private String originalFileName;
     
-    @Lob
-    @Column(name = "content")
-    private byte[] content;
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "content_digest", length = 64)
+    private String contentDigest;
+
+    // Encoding of the stored bytes, e.g. gzip; sizeBytes is always the size of the original file
+    @Column(name = "content_encoding", length = 16)
+    private String contentEncoding;
+
+    @Column(name = "stored_size_bytes")
+    private Long storedSizeBytes;
     
     @Column(name = "user_id")
     private String userId;
@@ -40,12 +58,57 @@ public class FileData {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Post-upload pipeline state; null for files uploaded before the pipeline existed
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_status", length = 16)
+    private ProcessingStatus processingStatus;
+
+    // The stage to run next, null once processing is complete
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_stage", length = 16)
+    private ProcessingStage processingStage;
+
+    @Column(name = "processing_attempts")
+    private Integer processingAttempts;
+
+    @Column(name = "processing_next_attempt_at")
+    private LocalDateTime processingNextAttemptAt;
+
+    @Column(name = "processing_error")
+    private String processingError;
+
+    // Whether the stored bytes still hash to contentDigest
+    @Column(name = "checksum_verified")
+    private Boolean checksumVerified;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scan_result", length = 16)
+    private ScanResult scanResult;
+
+    @Column(name = "mime_type", length = 127)
+    private String mimeType;
+
+    // The preview is stored as content of its own, deduplicated and reference counted like file content
+    @Column(name = "preview_digest", length = 64)
+    private String previewDigest;
+
+    @Column(name = "preview_key")
+    private String previewKey;
+
+    @Column(name = "preview_type", length = 64)
+    private String previewType;
+
+    // Deduplication may hand the preview the file's own compressed blob, e.g. for a small text file
+    @Column(name = "preview_encoding", length = 16)
+    private String previewEncoding;
+
     public FileData() { }
 
-    public FileData(String fileId, String originalFileName, byte[] content, String userId) {
+    public FileData(String fileId, String originalFileName, String storageKey, long sizeBytes, String userId) {
         this.fileId = fileId;
         this.originalFileName = originalFileName;
-        this.content = content;
+        this.storageKey = storageKey;
+        this.sizeBytes = sizeBytes;
         this.userId = userId;
         this.createdAt = LocalDateTime.now();
     }
@@ -67,12 +130,44 @@ public class FileData {
         this.originalFileName = originalFileName;
     }
 
-    public byte[] getContent() {
-        return content;
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
     }
 
-    public void setContent(byte[] content) {
-        this.content = content;
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public Long getStoredSizeBytes() {
+        return storedSizeBytes;
+    }
+
+    public void setStoredSizeBytes(Long storedSizeBytes) {
+        this.storedSizeBytes = storedSizeBytes;
     }
 
     public String getUserId() {
@@ -122,4 +217,100 @@ public class FileData {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public ProcessingStatus getProcessingStatus() {
+        return processingStatus;
+    }
+
+    public void setProcessingStatus(ProcessingStatus processingStatus) {
+        this.processingStatus = processingStatus;
+    }
+
+    public ProcessingStage getProcessingStage() {
+        return processingStage;
+    }
+
+    public void setProcessingStage(ProcessingStage processingStage) {
+        this.processingStage = processingStage;
+    }
+
+    public Integer getProcessingAttempts() {
+        return processingAttempts;
+    }
+
+    public void setProcessingAttempts(Integer processingAttempts) {
+        this.processingAttempts = processingAttempts;
+    }
+
+    public LocalDateTime getProcessingNextAttemptAt() {
+        return processingNextAttemptAt;
+    }
+
+    public void setProcessingNextAttemptAt(LocalDateTime processingNextAttemptAt) {
+        this.processingNextAttemptAt = processingNextAttemptAt;
+    }
+
+    public String getProcessingError() {
+        return processingError;
+    }
+
+    public void setProcessingError(String processingError) {
+        this.processingError = processingError;
+    }
+
+    public Boolean getChecksumVerified() {
+        return checksumVerified;
+    }
+
+    public void setChecksumVerified(Boolean checksumVerified) {
+        this.checksumVerified = checksumVerified;
+    }
+
+    public ScanResult getScanResult() {
+        return scanResult;
+    }
+
+    public void setScanResult(ScanResult scanResult) {
+        this.scanResult = scanResult;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public String getPreviewDigest() {
+        return previewDigest;
+    }
+
+    public void setPreviewDigest(String previewDigest) {
+        this.previewDigest = previewDigest;
+    }
+
+    public String getPreviewKey() {
+        return previewKey;
+    }
+
+    public void setPreviewKey(String previewKey) {
+        this.previewKey = previewKey;
+    }
+
+    public String getPreviewType() {
+        return previewType;
+    }
+
+    public void setPreviewType(String previewType) {
+        this.previewType = previewType;
+    }
+
+    public String getPreviewEncoding() {
+        return previewEncoding;
+    }
+
+    public void setPreviewEncoding(String previewEncoding) {
+        this.previewEncoding = previewEncoding;
+    }
 } 
@@ -0,0 +1,15 @@
+package com.sharex.model;
+
+// Post-upload stages in the order they run; the scan comes before anything parses the content
+public enum ProcessingStage {
+    CHECKSUM,
+    VIRUS_SCAN,
+    MIME_TYPE,
+    PREVIEW;
+
+    // Null after the last stage
+    public ProcessingStage next() {
+        ProcessingStage[] stages = values();
+        return ordinal() + 1 < stages.length ? stages[ordinal() + 1] : null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.sharex.model;
+
+public enum ProcessingStatus {
+    PENDING,
+    COMPLETE,
+    FAILED
+}
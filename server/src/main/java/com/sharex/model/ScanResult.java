@@ -0,0 +1,8 @@
+package com.sharex.model;
+
+public enum ScanResult {
+    CLEAN,
+    INFECTED,
+    // No scanner is configured
+    NOT_SCANNED
+}
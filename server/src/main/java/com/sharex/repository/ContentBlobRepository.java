@@ -0,0 +1,24 @@
+package com.sharex.repository;
+
+import com.sharex.model.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    @Modifying
+    @Query("UPDATE ContentBlob c SET c.refCount = c.refCount + 1 WHERE c.digest = :digest")
+    int incrementRefCount(@Param("digest") String digest);
+
+    @Modifying
+    @Query("UPDATE ContentBlob c SET c.refCount = c.refCount - 1 WHERE c.digest = :digest")
+    int decrementRefCount(@Param("digest") String digest);
+
+    @Modifying
+    @Query("DELETE FROM ContentBlob c WHERE c.digest = :digest AND c.refCount <= 0")
+    int deleteIfUnreferenced(@Param("digest") String digest);
+}
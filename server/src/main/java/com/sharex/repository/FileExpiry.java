@@ -0,0 +1,10 @@
+package com.sharex.repository;
+
+import java.time.LocalDateTime;
+
+public interface FileExpiry {
+
+    String getFileId();
+
+    LocalDateTime getExpiryDate();
+}
@@ -1,12 +1,25 @@
 package com.sharex.repository;
 
 import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStage;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FileRepository extends JpaRepository<FileData, String> {
@@ -14,11 +27,106 @@ public interface FileRepository extends JpaRepository<FileData, String> {
     @Query("SELECT f FROM FileData f WHERE f.userId = :userId")
     List<FileData> findByUserId(@Param("userId") String userId);
     
-    @Query("SELECT f.fileId, f.originalFileName, f.userId, f.passwordHash, " +
-           "f.downloadLimit, f.downloadCount, f.expiryDate, f.createdAt " +
-           "FROM FileData f WHERE f.userId = :userId")
-    List<Object[]> findByUserIdWithoutContent(@Param("userId") String userId);
+    String SUMMARY_SELECT = "SELECT f.fileId AS fileId, f.originalFileName AS originalFileName, " +
+           "f.userId AS userId, f.sizeBytes AS sizeBytes, " +
+           "CASE WHEN f.passwordHash IS NOT NULL THEN true ELSE false END AS passwordProtected, " +
+           "f.downloadLimit AS downloadLimit, f.downloadCount AS downloadCount, " +
+           "f.expiryDate AS expiryDate, f.createdAt AS createdAt, " +
+           "f.processingStatus AS processingStatus, f.checksumVerified AS checksumVerified, " +
+           "f.scanResult AS scanResult, f.mimeType AS mimeType, " +
+           "CASE WHEN f.previewKey IS NOT NULL THEN true ELSE false END AS previewAvailable FROM FileData f ";
+
+    @Query(SUMMARY_SELECT + "WHERE f.fileId = :fileId")
+    Optional<FileSummary> findSummaryById(@Param("fileId") String fileId);
+
+    @Query(SUMMARY_SELECT + "WHERE f.userId = :userId")
+    List<FileSummary> findSummariesByUserId(@Param("userId") String userId);
+
+    // Keyset pages, newest first; (createdAt, fileId) is unique so no row is skipped or repeated between pages
+    @Query(SUMMARY_SELECT + "WHERE f.userId = :userId ORDER BY f.createdAt DESC, f.fileId DESC")
+    List<FileSummary> findFirstSummaryPage(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE f.userId = :userId " +
+           "AND (f.createdAt < :createdAt OR (f.createdAt = :createdAt AND f.fileId < :fileId)) " +
+           "ORDER BY f.createdAt DESC, f.fileId DESC")
+    List<FileSummary> findSummaryPageAfter(@Param("userId") String userId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("fileId") String fileId,
+                                           Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SUMMARY_SELECT + "WHERE f.userId = :userId ORDER BY f.createdAt DESC, f.fileId DESC")
+    Stream<FileSummary> streamSummariesByUserId(@Param("userId") String userId);
     
+    @Query("SELECT f.fileId AS fileId, f.expiryDate AS expiryDate FROM FileData f " +
+           "WHERE f.expiryDate > :from AND f.expiryDate <= :to")
+    List<FileExpiry> findExpiringBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT f.fileId FROM FileData f WHERE f.expiryDate <= :cutoff ORDER BY f.expiryDate")
+    List<String> findExpiredFileIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Query("SELECT f.fileId FROM FileData f " +
+           "WHERE f.downloadLimit IS NOT NULL AND f.downloadCount >= f.downloadLimit")
+    List<String> findExhaustedFileIds(Pageable pageable);
+
+    // Concurrent deletes and stage results (e.g. a preview) wait on the row lock until the deleting transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM FileData f WHERE f.fileId = :fileId")
+    Optional<FileData> findByIdForUpdate(@Param("fileId") String fileId);
+
+    @Modifying
+    @Query("DELETE FROM FileData f WHERE f.fileId = :fileId")
+    int deleteByFileId(@Param("fileId") String fileId);
+
     @Query("SELECT COUNT(f) FROM FileData f WHERE f.userId = :userId")
     long countByUserId(@Param("userId") String userId);
+
+    @Query("SELECT f FROM FileData f WHERE f.processingStatus = :status AND f.processingNextAttemptAt <= :now " +
+           "ORDER BY f.processingNextAttemptAt")
+    List<FileData> findProcessingDue(@Param("status") ProcessingStatus status, @Param("now") LocalDateTime now,
+                                     Pageable pageable);
+
+    // Files uploaded before the pipeline existed have no status; only one caller gets to start them
+    @Modifying
+    @Query("UPDATE FileData f SET f.processingStatus = :status, f.processingStage = :stage, " +
+           "f.processingAttempts = 0, f.processingNextAttemptAt = :now " +
+           "WHERE f.fileId = :fileId AND f.processingStatus IS NULL")
+    int startProcessing(@Param("fileId") String fileId, @Param("stage") ProcessingStage stage,
+                        @Param("status") ProcessingStatus status, @Param("now") LocalDateTime now);
+
+    // Only moves the file on from the stage it was read at, so a stage finished twice is stored once
+    @Modifying
+    @Query("UPDATE FileData f SET f.processingStage = :next, f.processingStatus = :status, " +
+           "f.processingAttempts = 0, f.processingNextAttemptAt = :nextAttemptAt, f.processingError = NULL " +
+           "WHERE f.fileId = :fileId AND f.processingStage = :stage")
+    int advanceProcessing(@Param("fileId") String fileId, @Param("stage") ProcessingStage stage,
+                          @Param("next") ProcessingStage next, @Param("status") ProcessingStatus status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("UPDATE FileData f SET f.processingAttempts = f.processingAttempts + 1, f.processingStatus = :status, " +
+           "f.processingNextAttemptAt = :nextAttemptAt, f.processingError = :error " +
+           "WHERE f.fileId = :fileId AND f.processingStage = :stage")
+    int recordProcessingFailure(@Param("fileId") String fileId, @Param("stage") ProcessingStage stage,
+                                @Param("status") ProcessingStatus status,
+                                @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE FileData f SET f.checksumVerified = :verified WHERE f.fileId = :fileId")
+    int setChecksumVerified(@Param("fileId") String fileId, @Param("verified") Boolean verified);
+
+    @Modifying
+    @Query("UPDATE FileData f SET f.scanResult = :scanResult WHERE f.fileId = :fileId")
+    int setScanResult(@Param("fileId") String fileId, @Param("scanResult") ScanResult scanResult);
+
+    @Modifying
+    @Query("UPDATE FileData f SET f.mimeType = :mimeType WHERE f.fileId = :fileId")
+    int setMimeType(@Param("fileId") String fileId, @Param("mimeType") String mimeType);
+
+    @Modifying
+    @Query("UPDATE FileData f SET f.previewDigest = :digest, f.previewKey = :storageKey, f.previewType = :type, " +
+           "f.previewEncoding = :encoding WHERE f.fileId = :fileId")
+    int setPreview(@Param("fileId") String fileId, @Param("digest") String digest,
+                   @Param("storageKey") String storageKey, @Param("type") String type,
+                   @Param("encoding") String encoding);
 } 
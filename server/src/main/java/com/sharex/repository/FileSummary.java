@@ -0,0 +1,38 @@
+package com.sharex.repository;
+
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
+
+import java.time.LocalDateTime;
+
+// Metadata columns of a file without its stored content
+public interface FileSummary {
+
+    String getFileId();
+
+    String getOriginalFileName();
+
+    String getUserId();
+
+    Long getSizeBytes();
+
+    Boolean getPasswordProtected();
+
+    Integer getDownloadLimit();
+
+    Integer getDownloadCount();
+
+    LocalDateTime getExpiryDate();
+
+    LocalDateTime getCreatedAt();
+
+    ProcessingStatus getProcessingStatus();
+
+    Boolean getChecksumVerified();
+
+    ScanResult getScanResult();
+
+    String getMimeType();
+
+    Boolean getPreviewAvailable();
+}
@@ -0,0 +1,23 @@
+package com.sharex.repository;
+
+import com.sharex.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UploadSession u WHERE u.uploadId = :uploadId")
+    int deleteByUploadId(@Param("uploadId") String uploadId);
+}
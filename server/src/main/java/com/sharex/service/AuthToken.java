@@ -0,0 +1,33 @@
+package com.sharex.service;
+
+public class AuthToken {
+
+    private final String tokenId;
+    private final String userId;
+    private final String username;
+    private final long expiresAt;
+
+    public AuthToken(String tokenId, String userId, String username, long expiresAt) {
+        this.tokenId = tokenId;
+        this.userId = userId;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // Epoch seconds
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,153 @@
+package com.sharex.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Signs and verifies the stateless login tokens used when sharex.auth.mode is "token"
+@Service
+public class AuthTokenService {
+
+    public static final String TOKEN_COOKIE = "SHAREX_TOKEN";
+    public static final String TOKEN_ATTRIBUTE = AuthTokenService.class.getName() + ".TOKEN";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private final String activeKeyId;
+    private final Duration ttl;
+    private final Clock clock;
+
+    // Token id -> expiry in epoch seconds, kept only until the token would have expired anyway
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AuthTokenService(@Value("${sharex.auth.token.keys:}") String keys,
+                            @Value("${sharex.auth.token.active-key-id:}") String activeKeyId,
+                            @Value("${sharex.auth.token.ttl:30m}") Duration ttl) {
+        this(keys, activeKeyId, ttl, Clock.systemUTC());
+    }
+
+    // keys is a comma separated list of kid:secret pairs; old kids stay listed until their tokens have expired
+    AuthTokenService(String keys, String activeKeyId, Duration ttl, Clock clock) {
+        if (keys != null && !keys.isBlank()) {
+            for (String entry : keys.split(",")) {
+                int separator = entry.indexOf(':');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Token keys must be given as kid:secret");
+                }
+                this.keys.put(entry.substring(0, separator).trim(), new SecretKeySpec(
+                        entry.substring(separator + 1).trim().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            }
+        } else {
+            // Tokens then only survive until restart and are not accepted by other instances
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            this.keys.put("local", new SecretKeySpec(secret, HMAC_ALGORITHM));
+        }
+
+        if (activeKeyId == null || activeKeyId.isBlank()) {
+            this.activeKeyId = this.keys.keySet().iterator().next();
+        } else if (this.keys.containsKey(activeKeyId)) {
+            this.activeKeyId = activeKeyId;
+        } else {
+            throw new IllegalArgumentException("Unknown active token key " + activeKeyId);
+        }
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public String issue(String userId, String username) {
+        long now = clock.instant().getEpochSecond();
+        String payload = String.join("|", UUID.randomUUID().toString(), userId,
+                String.valueOf(now + ttl.toSeconds()), username);
+        String signingInput = activeKeyId + "." + encode(payload.getBytes(StandardCharsets.UTF_8));
+        return signingInput + "." + encode(sign(keys.get(activeKeyId), signingInput));
+    }
+
+    public Optional<AuthToken> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first) {
+            return Optional.empty();
+        }
+
+        SecretKeySpec key = keys.get(token.substring(0, first));
+        if (key == null) {
+            return Optional.empty();
+        }
+
+        try {
+            String signingInput = token.substring(0, last);
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(key, signingInput))) {
+                return Optional.empty();
+            }
+
+            String payload = new String(Base64.getUrlDecoder().decode(token.substring(first + 1, last)),
+                    StandardCharsets.UTF_8);
+            String[] fields = payload.split("\\|", 4);
+            if (fields.length != 4) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(fields[2]);
+            if (clock.instant().getEpochSecond() >= expiresAt || revoked.containsKey(fields[0])) {
+                return Optional.empty();
+            }
+            return Optional.of(new AuthToken(fields[0], fields[1], fields[3], expiresAt));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void revoke(AuthToken token) {
+        revoked.put(token.getTokenId(), token.getExpiresAt());
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    @Scheduled(fixedDelayString = "${sharex.auth.token.revocation-purge-interval-ms:60000}")
+    public void purgeRevoked() {
+        long now = clock.instant().getEpochSecond();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private byte[] sign(SecretKeySpec key, String signingInput) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
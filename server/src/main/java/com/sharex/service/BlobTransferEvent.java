@@ -0,0 +1,66 @@
+package com.sharex.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.sharex.BlobTransfer")
+@Label("Blob Transfer")
+@Category({"ShareX", "Download"})
+@Description("Writing stored content to a response. With sendfile the bytes are written by Tomcat after this event, "
+        + "and for channel and mmap transfers disk reads happen inside the write")
+@StackTrace(false)
+class BlobTransferEvent extends Event {
+
+    static final String SENDFILE = "sendfile";
+    static final String HOT_CACHE = "hot-cache";
+    static final String CHANNEL = "channel";
+    static final String STREAM = "stream";
+    static final String DECODED = "decoded";
+
+    @Label("Storage Key")
+    String storageKey;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Ranges")
+    int ranges;
+
+    @Label("Read Time")
+    @Description("Locating and opening the blob, loading it into the hot cache and reading stream bodies")
+    @Timespan
+    long readDuration;
+
+    @Label("Write Time")
+    @Timespan
+    long writeDuration;
+
+    BlobTransferEvent(String storageKey, long bytes, int ranges) {
+        this.storageKey = storageKey;
+        this.bytes = bytes;
+        this.ranges = ranges;
+    }
+
+    // Both add the time since a System.nanoTime() reading to their phase and return the new reading
+    long readSince(long start) {
+        long now = System.nanoTime();
+        readDuration += now - start;
+        return now;
+    }
+
+    long writeSince(long start) {
+        long now = System.nanoTime();
+        writeDuration += now - start;
+        return now;
+    }
+}
@@ -0,0 +1,282 @@
+package com.sharex.service;
+
+import com.sharex.dto.InitiateUploadRequest;
+import com.sharex.model.UploadSession;
+import com.sharex.repository.UploadSessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Resumable uploads: chunks arrive in any order and in parallel, each is verified on its own and staged on disk,
+// and completing the upload streams them in order into the blob store
+@Service
+public class ChunkedUploadService {
+
+    private static final Pattern CHECKSUM_PATTERN = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final Pattern CHUNK_FILE_PATTERN = Pattern.compile("(\\d+)\\.part");
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Value("${sharex.upload.staging-root:./data/uploads}")
+    private String stagingRoot;
+
+    @Value("${sharex.upload.chunk-size:8MB}")
+    private DataSize defaultChunkSize;
+
+    @Value("${sharex.upload.min-chunk-size:1MB}")
+    private DataSize minChunkSize;
+
+    @Value("${sharex.upload.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${sharex.upload.max-file-size:10GB}")
+    private DataSize maxFileSize;
+
+    @Value("${sharex.upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Value("${sharex.storage.chunk-size:64KB}")
+    private DataSize bufferSize;
+
+    public UploadSession initiate(String userId, InitiateUploadRequest request) {
+        if (request.getSize() > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("File exceeds the maximum size of " + maxFileSize.toMegabytes() + "MB");
+        }
+
+        long requested = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize.toBytes();
+        int chunkSize = (int) Math.min(Math.max(requested, minChunkSize.toBytes()), maxChunkSize.toBytes());
+
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), userId, request.getFileName(),
+                request.getSize(), chunkSize, LocalDateTime.now().plus(sessionTtl));
+        session.setPasswordHash(fileService.hashPassword(request.getPassword()));
+        if (request.getDownloadLimit() != null && request.getDownloadLimit() > 0) {
+            session.setDownloadLimit(request.getDownloadLimit());
+        }
+        session.setExpiryDate(request.getExpiryDate());
+        session.setCompress(request.getCompress());
+        return uploadSessionRepository.save(session);
+    }
+
+    public Optional<UploadSession> getSession(String uploadId, String userId) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(session -> session.getUserId().equals(userId))
+                .filter(session -> session.getExpiresAt().isAfter(LocalDateTime.now()));
+    }
+
+    // The chunk goes to a private temp file and is renamed into place only once its length and checksum match,
+    // so retried or concurrent uploads of the same chunk never leave a partial one behind
+    public void putChunk(UploadSession session, int index, InputStream body, String checksum) throws IOException {
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index out of range");
+        }
+        if (checksum == null || !CHECKSUM_PATTERN.matcher(checksum).matches()) {
+            throw new IllegalArgumentException("Missing or malformed chunk checksum");
+        }
+
+        long expected = session.chunkLength(index);
+        Path directory = Files.createDirectories(stagingDirectory(session));
+        Path temp = Files.createTempFile(directory, index + "-", ".tmp");
+        try {
+            MessageDigest sha256 = newSha256();
+            long written = 0;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[(int) bufferSize.toBytes()];
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    written += read;
+                    if (written > expected) {
+                        throw new IllegalArgumentException("Chunk " + index + " is longer than " + expected + " bytes");
+                    }
+                    sha256.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            if (written != expected) {
+                throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected "
+                        + expected);
+            }
+            if (!HexFormat.of().formatHex(sha256.digest()).equalsIgnoreCase(checksum)) {
+                throw new IllegalArgumentException("Chunk " + index + " does not match its checksum");
+            }
+            Files.move(temp, chunkPath(session, index), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public List<Integer> receivedChunks(UploadSession session) throws IOException {
+        Path directory = stagingDirectory(session);
+        List<Integer> received = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return received;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = CHUNK_FILE_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    received.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        received.sort(null);
+        return received;
+    }
+
+    // Throws IllegalStateException while chunks are missing or another request is already completing the upload
+    public String complete(UploadSession session) throws IOException {
+        int missing = session.getChunkCount() - receivedChunks(session).size();
+        if (missing > 0) {
+            throw new IllegalStateException(missing + " chunks are missing");
+        }
+        // Removing the row claims the upload, so two complete calls cannot both create a file
+        if (uploadSessionRepository.deleteByUploadId(session.getUploadId()) == 0) {
+            throw new IllegalStateException("Upload is already being completed");
+        }
+
+        String fileId;
+        try (InputStream in = new SequenceInputStream(chunkStreams(session))) {
+            fileId = fileService.storeFile(in, session.getSizeBytes(), session.getOriginalFileName(),
+                    uploadOptions(session));
+        } catch (UncheckedIOException e) {
+            uploadSessionRepository.save(session);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            // Keep the chunks and give the session back so the client can retry
+            uploadSessionRepository.save(session);
+            throw e;
+        }
+        deleteStagingDirectory(session);
+        return fileId;
+    }
+
+    public void abort(UploadSession session) throws IOException {
+        uploadSessionRepository.delete(session);
+        deleteStagingDirectory(session);
+    }
+
+    @Scheduled(fixedDelayString = "${sharex.upload.purge-interval-ms:3600000}")
+    public void purgeExpired() throws IOException {
+        for (UploadSession session : uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+            abort(session);
+        }
+        purgeOrphanedStagingDirectories();
+    }
+
+    // Staging directories without a session row: left by a crash between claiming an upload in complete and
+    // deleting its chunks, or re-created by a chunk that arrived while the upload was being completed. A complete
+    // running right now has no row either, but it started before its session expired, so a directory untouched
+    // for twice the session lifetime cannot belong to one.
+    private void purgeOrphanedStagingDirectories() throws IOException {
+        Path root = stagingRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(sessionTtl.multipliedBy(2));
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                if (Files.getLastModifiedTime(directory).toInstant().isBefore(cutoff)
+                        && !uploadSessionRepository.existsById(directory.getFileName().toString())) {
+                    deleteDirectory(directory);
+                }
+            }
+        }
+    }
+
+    // Opens each chunk only when the previous one is exhausted, so a single file handle is open at a time
+    private Enumeration<InputStream> chunkStreams(UploadSession session) {
+        return new Enumeration<>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < session.getChunkCount();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(chunkPath(session, next++));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private UploadOptions uploadOptions(UploadSession session) {
+        UploadOptions options = new UploadOptions();
+        options.setUserId(session.getUserId());
+        options.setPasswordHash(session.getPasswordHash());
+        options.setDownloadLimit(session.getDownloadLimit());
+        options.setExpiryDate(session.getExpiryDate());
+        options.setCompress(session.getCompress());
+        return options;
+    }
+
+    private void deleteStagingDirectory(UploadSession session) throws IOException {
+        deleteDirectory(stagingDirectory(session));
+    }
+
+    private void deleteDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private Path stagingDirectory(UploadSession session) {
+        return stagingRoot().resolve(session.getUploadId());
+    }
+
+    private Path stagingRoot() {
+        return Paths.get(stagingRoot).toAbsolutePath().normalize();
+    }
+
+    private Path chunkPath(UploadSession session, int index) {
+        return stagingDirectory(session).resolve(index + ".part");
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
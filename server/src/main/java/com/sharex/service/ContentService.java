@@ -0,0 +1,235 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.repository.ContentBlobRepository;
+import com.sharex.storage.BlobStore;
+import com.sharex.storage.StoredBlob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+@Service
+public class ContentService {
+
+    public static final String GZIP = "gzip";
+
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+    // Leading bytes of formats that are compressed already
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+        {0x1f, (byte) 0x8b},
+        {0x50, 0x4b, 0x03, 0x04},
+        {(byte) 0x89, 0x50, 0x4e, 0x47},
+        {(byte) 0xff, (byte) 0xd8, (byte) 0xff},
+        {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd},
+        {(byte) 0xfd, 0x37, 0x7a, 0x58, 0x5a},
+        {0x37, 0x7a, (byte) 0xbc, (byte) 0xaf},
+        {0x42, 0x5a, 0x68}
+    };
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HotContentCache hotContentCache;
+
+    @Value("${sharex.compression.level:1}")
+    private int compressionLevel;
+
+    @Value("${sharex.compression.sample-size:64KB}")
+    private DataSize compressionSampleSize;
+
+    // Content is only compressed when the sample shrinks to at most this share of its size
+    @Value("${sharex.compression.max-ratio:0.9}")
+    private double compressionMaxRatio;
+
+    private final LongAdder ingestedBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+
+    public ContentBlob store(InputStream content) throws IOException {
+        return store(content, false);
+    }
+
+    // The digest is always taken over the original bytes, so deduplication does not depend on the encoding
+    public ContentBlob store(InputStream content, boolean compress) throws IOException {
+        MessageDigest sha256 = newSha256();
+        StoredBlob blob;
+        long size;
+        String encoding = null;
+        try (DigestInputStream in = new DigestInputStream(content, sha256)) {
+            if (compress) {
+                byte[] sample = in.readNBytes((int) compressionSampleSize.toBytes());
+                InputStream source = new SequenceInputStream(new ByteArrayInputStream(sample), in);
+                if (isWorthCompressing(sample)) {
+                    try (GzipCompressingInputStream gzip = new GzipCompressingInputStream(source, compressionLevel)) {
+                        blob = blobStore.write(gzip);
+                        size = gzip.getUncompressedSize();
+                    }
+                    encoding = GZIP;
+                } else {
+                    blob = blobStore.write(source);
+                    size = blob.getSize();
+                }
+            } else {
+                blob = blobStore.write(in);
+                size = blob.getSize();
+            }
+        }
+        String digest = HexFormat.of().formatHex(sha256.digest());
+
+        ContentBlob registered;
+        try {
+            registered = register(digest, blob, size, encoding);
+        } catch (RuntimeException e) {
+            blobStore.delete(blob.getKey());
+            throw e;
+        }
+
+        ingestedBytes.add(size);
+        if (blob.getKey().equals(registered.getStorageKey())) {
+            writtenBytes.add(blob.getSize());
+        }
+        return registered;
+    }
+
+    // The original bytes, decoded if the content was stored compressed
+    public InputStream open(String storageKey, String encoding) throws IOException {
+        InputStream in = blobStore.open(storageKey);
+        if (!GZIP.equals(encoding)) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in, DECODE_BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    // Original size of all stored content, including uploads that turned out to be duplicates
+    public long getIngestedBytes() {
+        return ingestedBytes.sum();
+    }
+
+    // Bytes that actually reached the blob store, after compression and deduplication
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    // Drops one reference and returns true if that was the last one and the blob was deleted
+    public boolean release(String digest, String storageKey) throws IOException {
+        if (digest == null) {
+            // Stored before deduplication was introduced, the blob belongs to a single file
+            if (storageKey == null) {
+                return false;
+            }
+            hotContentCache.invalidate(storageKey);
+            blobStore.delete(storageKey);
+            return true;
+        }
+
+        Boolean unreferenced = transactionTemplate.execute(status -> {
+            contentBlobRepository.decrementRefCount(digest);
+            return contentBlobRepository.deleteIfUnreferenced(digest) > 0;
+        });
+        if (!Boolean.TRUE.equals(unreferenced)) {
+            return false;
+        }
+        hotContentCache.invalidate(storageKey);
+        blobStore.delete(storageKey);
+        return true;
+    }
+
+    private ContentBlob register(String digest, StoredBlob blob, long size, String encoding) throws IOException {
+        for (int attempt = 0; attempt < MAX_REGISTER_ATTEMPTS; attempt++) {
+            ContentBlob existing = transactionTemplate.execute(status ->
+                    contentBlobRepository.incrementRefCount(digest) > 0
+                            ? contentBlobRepository.findById(digest).orElse(null)
+                            : null);
+            if (existing != null) {
+                // Same bytes are already stored, drop the copy that was just written
+                blobStore.delete(blob.getKey());
+                return existing;
+            }
+
+            try {
+                return transactionTemplate.execute(status ->
+                        contentBlobRepository.saveAndFlush(
+                                new ContentBlob(digest, blob.getKey(), size, blob.getSize(), encoding)));
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent upload of the same content registered it first, take a reference to that one
+            }
+        }
+        throw new IllegalStateException("Could not register content " + digest);
+    }
+
+    // Skips known compressed formats outright, otherwise compresses the sample once and checks what it saves
+    private boolean isWorthCompressing(byte[] sample) {
+        if (sample.length == 0) {
+            return false;
+        }
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (startsWith(sample, signature)) {
+                return false;
+            }
+        }
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] output = new byte[sample.length];
+            double limit = sample.length * compressionMaxRatio;
+            while (!deflater.finished()) {
+                deflater.deflate(output);
+                if (deflater.getBytesWritten() > limit) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.sharex.service;
+
+import com.sharex.storage.BlobLocation;
+import com.sharex.storage.BlobStore;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+@Service
+public class ContentTransferService {
+
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private HotContentCache hotContentCache;
+
+    @Value("${sharex.download.sendfile-enabled:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${sharex.download.sendfile-min-size:48KB}")
+    private DataSize sendfileMinSize;
+
+    @Value("${sharex.download.mmap-max-size:4MB}")
+    private DataSize mmapMaxSize;
+
+    private final LongAdder servedBytes = new LongAdder();
+
+    // Returns an empty list when the whole representation should be sent, throws IllegalArgumentException if the
+    // requested ranges cannot be satisfied
+    public List<ByteRange> resolveRanges(HttpServletRequest request, long size, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, etag, lastModified)) {
+            return List.of();
+        }
+
+        List<HttpRange> requested;
+        try {
+            requested = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // A Range header that does not parse is ignored (RFC 7233, section 3.1)
+            return List.of();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (HttpRange range : requested) {
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+            if (start >= size || start > end) {
+                throw new IllegalArgumentException("Range " + range + " not satisfiable for " + size + " bytes");
+            }
+            ranges.add(new ByteRange(start, end));
+        }
+        return coalesce(ranges);
+    }
+
+    public void transfer(String storageKey, long start, long length,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        transfer(storageKey, start, length, request, response, true);
+    }
+
+    // Without sendfile the body is fully written when this returns, so the caller can count the transfer as done
+    public void transfer(String storageKey, long start, long length, HttpServletRequest request,
+                         HttpServletResponse response, boolean sendfileAllowed) throws IOException {
+        response.setContentLengthLong(length);
+        servedBytes.add(length);
+        BlobTransferEvent event = new BlobTransferEvent(storageKey, length, 1);
+        event.begin();
+        try {
+            transfer(storageKey, start, length, request, response, sendfileAllowed, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    // Response body bytes handed out, counted when a transfer starts (sendfile bodies are written by Tomcat later)
+    public long getServedBytes() {
+        return servedBytes.sum();
+    }
+
+    // True if Accept-Encoding lists gzip (or *) without q=0
+    public boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean accepted = false;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String coding = parts[0].trim().toLowerCase();
+            if (!coding.equals(ContentService.GZIP) && !coding.equals("*")) {
+                continue;
+            }
+            boolean allowed = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        allowed = Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        allowed = false;
+                    }
+                }
+            }
+            if (coding.equals(ContentService.GZIP)) {
+                // An explicit entry wins over the wildcard
+                return allowed;
+            }
+            accepted = allowed;
+        }
+        return accepted;
+    }
+
+    // Serves part of gzip-stored content in its original form, decompressing while streaming
+    public void transferDecoded(String storageKey, long start, long length, HttpServletResponse response)
+            throws IOException {
+        response.setContentLengthLong(length);
+        servedBytes.add(length);
+        BlobTransferEvent event = new BlobTransferEvent(storageKey, length, 1);
+        event.mode = BlobTransferEvent.DECODED;
+        event.begin();
+        long mark = System.nanoTime();
+        try (InputStream in = openDecoded(storageKey)) {
+            in.skipNBytes(start);
+            event.readSince(mark);
+            copy(in, response.getOutputStream(), length, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    // storedEncoding is the encoding of the stored bytes; ranges always address the original content
+    public void transferRanges(String storageKey, String storedEncoding, List<ByteRange> ranges, long size,
+                               String contentType, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(size) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.getLength();
+        }
+        byte[] trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        servedBytes.add(contentLength);
+        BlobTransferEvent event = new BlobTransferEvent(storageKey, contentLength, ranges.size());
+        event.begin();
+        try {
+            transferRanges(storageKey, storedEncoding, ranges, partHeaders, trailer, response, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private void transfer(String storageKey, long start, long length, HttpServletRequest request,
+                          HttpServletResponse response, boolean sendfileAllowed, BlobTransferEvent event)
+            throws IOException {
+        long mark = System.nanoTime();
+        Optional<BlobLocation> location = blobStore.locate(storageKey);
+        if (location.isEmpty()) {
+            event.mode = BlobTransferEvent.STREAM;
+            try (InputStream in = blobStore.open(storageKey)) {
+                in.skipNBytes(start);
+                event.readSince(mark);
+                copy(in, response.getOutputStream(), length, event);
+            }
+            return;
+        }
+
+        BlobLocation blob = location.get();
+        long position = blob.getOffset() + start;
+
+        if (sendfileAllowed && isSendfileAvailable(request, length)) {
+            // Tomcat streams the region with sendfile(2) once the response is committed
+            request.setAttribute(SENDFILE_FILENAME_ATTR, blob.getPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + length);
+            event.mode = BlobTransferEvent.SENDFILE;
+            event.readSince(mark);
+            return;
+        }
+
+        Optional<ByteBuffer> cached = hotContentCache.getOrLoad(storageKey, blob);
+        if (cached.isPresent()) {
+            event.mode = BlobTransferEvent.HOT_CACHE;
+            mark = event.readSince(mark);
+            writeBuffer(cached.get().slice((int) start, (int) length), rawOutputStream(response));
+            event.writeSince(mark);
+            return;
+        }
+
+        event.mode = BlobTransferEvent.CHANNEL;
+        try (FileChannel channel = FileChannel.open(blob.getPath(), StandardOpenOption.READ)) {
+            mark = event.readSince(mark);
+            writeRegion(channel, position, length, rawOutputStream(response));
+            event.writeSince(mark);
+        }
+    }
+
+    private void transferRanges(String storageKey, String storedEncoding, List<ByteRange> ranges,
+                                List<byte[]> partHeaders, byte[] trailer, HttpServletResponse response,
+                                BlobTransferEvent event) throws IOException {
+        long mark = System.nanoTime();
+        if (ContentService.GZIP.equals(storedEncoding)) {
+            // Ranges are sorted and disjoint, one pass over the decoded stream serves all of them
+            event.mode = BlobTransferEvent.DECODED;
+            ServletOutputStream out = response.getOutputStream();
+            try (InputStream in = openDecoded(storageKey)) {
+                long position = 0;
+                for (int i = 0; i < ranges.size(); i++) {
+                    ByteRange range = ranges.get(i);
+                    out.write(partHeaders.get(i));
+                    mark = System.nanoTime();
+                    in.skipNBytes(range.getStart() - position);
+                    event.readSince(mark);
+                    copy(in, out, range.getLength(), event);
+                    position = range.getStart() + range.getLength();
+                }
+            }
+            out.write(trailer);
+            return;
+        }
+
+        Optional<BlobLocation> location = blobStore.locate(storageKey);
+        if (location.isEmpty()) {
+            event.mode = BlobTransferEvent.STREAM;
+            ServletOutputStream out = response.getOutputStream();
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                mark = System.nanoTime();
+                try (InputStream in = blobStore.open(storageKey)) {
+                    in.skipNBytes(ranges.get(i).getStart());
+                    event.readSince(mark);
+                    copy(in, out, ranges.get(i).getLength(), event);
+                }
+            }
+            out.write(trailer);
+            return;
+        }
+
+        BlobLocation blob = location.get();
+        Optional<ByteBuffer> cached = hotContentCache.getOrLoad(storageKey, blob);
+        if (cached.isPresent()) {
+            event.mode = BlobTransferEvent.HOT_CACHE;
+            mark = event.readSince(mark);
+            ServletOutputStream out = rawOutputStream(response);
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                ByteRange range = ranges.get(i);
+                writeBuffer(cached.get().slice((int) range.getStart(), (int) range.getLength()), out);
+            }
+            out.write(trailer);
+            event.writeSince(mark);
+            return;
+        }
+
+        event.mode = BlobTransferEvent.CHANNEL;
+        try (FileChannel channel = FileChannel.open(blob.getPath(), StandardOpenOption.READ)) {
+            mark = event.readSince(mark);
+            ServletOutputStream out = rawOutputStream(response);
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                writeRegion(channel, blob.getOffset() + ranges.get(i).getStart(), ranges.get(i).getLength(), out);
+            }
+            out.write(trailer);
+            event.writeSince(mark);
+        }
+    }
+
+    private InputStream openDecoded(String storageKey) throws IOException {
+        return new GZIPInputStream(blobStore.open(storageKey), DECODE_BUFFER_SIZE);
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Only a strong validator match may be used for a range request
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (ByteRange next : sorted.subList(1, sorted.size())) {
+            if (next.getStart() <= current.getEnd() + 1) {
+                current = new ByteRange(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private void writeRegion(FileChannel channel, long position, long length, OutputStream out) throws IOException {
+        if (out instanceof CoyoteOutputStream coyote) {
+            // Larger regions go out as successive mapped windows, so no byte is copied through a heap buffer and
+            // at most one window is mapped at a time
+            long window = Math.max(1, mmapMaxSize.toBytes());
+            for (long offset = 0; offset < length; offset += window) {
+                coyote.write(channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                        Math.min(window, length - offset)));
+            }
+            return;
+        }
+
+        // Only reached outside Tomcat, where the output stream takes nothing but byte arrays
+        WritableByteChannel target = Channels.newChannel(out);
+        long transferred = 0;
+        while (transferred < length) {
+            transferred += channel.transferTo(position + transferred, length - transferred, target);
+        }
+    }
+
+    private void writeBuffer(ByteBuffer body, OutputStream out) throws IOException {
+        if (out instanceof CoyoteOutputStream coyote) {
+            // Handed to the connector as is, the direct buffer is never copied onto the heap
+            coyote.write(body);
+            return;
+        }
+
+        // Only reached outside Tomcat, where the output stream takes nothing but byte arrays
+        WritableByteChannel target = Channels.newChannel(out);
+        while (body.hasRemaining()) {
+            target.write(body);
+        }
+    }
+
+    private boolean isSendfileAvailable(HttpServletRequest request, long length) {
+        return sendfileEnabled
+                && length >= sendfileMinSize.toBytes()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    private ServletOutputStream rawOutputStream(HttpServletResponse response) throws IOException {
+        // Commit headers through the filter wrappers (session, security headers) before bypassing them
+        response.flushBuffer();
+        ServletResponse current = response;
+        while (current instanceof ServletResponseWrapper wrapper) {
+            current = wrapper.getResponse();
+        }
+        return current.getOutputStream();
+    }
+
+    // Splits the time between reading the blob and writing the response, which is where a slow download goes
+    private void copy(InputStream in, OutputStream out, long length, BlobTransferEvent event) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        long mark = System.nanoTime();
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of stored content");
+            }
+            mark = event.readSince(mark);
+            out.write(buffer, 0, read);
+            mark = event.writeSince(mark);
+            remaining -= read;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sharex.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.sharex.DownloadCount")
+@Label("Download Count Update")
+@Category({"ShareX", "Download"})
+@StackTrace(false)
+class DownloadCountEvent extends Event {
+
+    @Label("File Id")
+    String fileId;
+}
@@ -0,0 +1,131 @@
+package com.sharex.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class DownloadCounterService {
+
+    private static final String FLUSH_SQL =
+            "UPDATE files SET download_count = COALESCE(download_count, 0) + ? WHERE file_id = ?";
+    private static final int IDLE_FLUSHES_BEFORE_RETIRE = 2;
+
+    private final Map<String, PendingCount> pending = new ConcurrentHashMap<>();
+    private final List<Map.Entry<String, PendingCount>> retired = new ArrayList<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Increments inside compute, so none can land on a counter after flush() retired it from the map
+    public void increment(String fileId) {
+        pending.compute(fileId, (id, count) -> {
+            PendingCount current = count != null ? count : new PendingCount();
+            current.added.increment();
+            return current;
+        });
+    }
+
+    // Increments recorded on this node that have not been written to the database yet
+    public long pendingCount(String fileId) {
+        PendingCount count = pending.get(fileId);
+        return count != null ? count.unflushed() : 0;
+    }
+
+    public int currentCount(String fileId, Integer persistedCount) {
+        return (persistedCount != null ? persistedCount : 0) + (int) pendingCount(fileId);
+    }
+
+    @Scheduled(fixedDelayString = "${sharex.download-counter.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<String> fileIds = new ArrayList<>();
+            List<PendingCount> counts = new ArrayList<>();
+            List<Long> deltas = new ArrayList<>();
+
+            // Counters retired on the previous flush may have taken an increment between their last collect and
+            // their removal
+            for (Map.Entry<String, PendingCount> entry : retired) {
+                collect(entry.getKey(), entry.getValue(), fileIds, counts, deltas);
+            }
+            List<Map.Entry<String, PendingCount>> retiredNow = new ArrayList<>();
+
+            for (Map.Entry<String, PendingCount> entry : pending.entrySet()) {
+                PendingCount count = entry.getValue();
+                if (collect(entry.getKey(), count, fileIds, counts, deltas)) {
+                    count.idleFlushes = 0;
+                } else if (++count.idleFlushes >= IDLE_FLUSHES_BEFORE_RETIRE
+                        && pending.remove(entry.getKey(), count)) {
+                    retiredNow.add(Map.entry(entry.getKey(), count));
+                }
+            }
+
+            int previouslyRetired = retired.size();
+            retired.addAll(retiredNow);
+
+            if (!fileIds.isEmpty()) {
+                List<Object[]> batch = new ArrayList<>(fileIds.size());
+                for (int i = 0; i < fileIds.size(); i++) {
+                    batch.add(new Object[] {deltas.get(i), fileIds.get(i)});
+                }
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+                for (int i = 0; i < counts.size(); i++) {
+                    counts.get(i).flushed += deltas.get(i);
+                }
+                for (String fileId : fileIds) {
+                    eventPublisher.publishEvent(new FileChangedEvent(fileId));
+                }
+            }
+
+            retired.subList(0, previouslyRetired).clear();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private boolean collect(String fileId, PendingCount count,
+                            List<String> fileIds, List<PendingCount> counts, List<Long> deltas) {
+        long delta = count.unflushed();
+        if (delta <= 0) {
+            return false;
+        }
+        fileIds.add(fileId);
+        counts.add(count);
+        deltas.add(delta);
+        return true;
+    }
+
+    private static final class PendingCount {
+
+        private final LongAdder added = new LongAdder();
+
+        // Only written by the flusher while holding flushLock
+        private volatile long flushed;
+
+        private int idleFlushes;
+
+        private long unflushed() {
+            return added.sum() - flushed;
+        }
+    }
+}
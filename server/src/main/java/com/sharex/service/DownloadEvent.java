@@ -0,0 +1,95 @@
+package com.sharex.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Emitted by FileController for the whole download request; the nested FileAccess, BlobTransfer and DownloadCount
+// events on the same thread break the phases down further
+@Name("com.sharex.Download")
+@Label("File Download")
+@Category({"ShareX", "Download"})
+@StackTrace(false)
+public class DownloadEvent extends Event {
+
+    @Label("File Id")
+    private String fileId;
+
+    @Label("Status")
+    private int status;
+
+    @Label("Bytes")
+    @Description("Response body length, the stored size for gzip sent as is")
+    @DataAmount
+    private long bytes;
+
+    @Label("Lookup Time")
+    @Timespan
+    private long lookupDuration;
+
+    @Label("Access Check Time")
+    @Timespan
+    private long accessDuration;
+
+    @Label("Reservation Time")
+    @Timespan
+    private long reservationDuration;
+
+    @Label("Transfer Time")
+    @Timespan
+    private long transferDuration;
+
+    @Label("Count Time")
+    @Timespan
+    private long countDuration;
+
+    // Not recorded, transient fields are skipped by JFR
+    private transient long phaseStart;
+
+    public DownloadEvent(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public void start() {
+        begin();
+        phaseStart = System.nanoTime();
+    }
+
+    public void lookedUp() {
+        lookupDuration = lap();
+    }
+
+    public void accessChecked() {
+        accessDuration = lap();
+    }
+
+    public void reserved() {
+        reservationDuration = lap();
+    }
+
+    public void transferred(long length) {
+        bytes = length;
+        transferDuration = lap();
+    }
+
+    public void counted() {
+        countDuration = lap();
+    }
+
+    public void finish(int responseStatus) {
+        status = responseStatus;
+        commit();
+    }
+
+    private long lap() {
+        long now = System.nanoTime();
+        long elapsed = now - phaseStart;
+        phaseStart = now;
+        return elapsed;
+    }
+}
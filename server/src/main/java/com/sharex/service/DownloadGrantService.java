@@ -0,0 +1,123 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+// Issues and checks signed grants that prove the password of a file was verified recently, or that the holder's
+// download of a file with a download limit has already been counted
+@Service
+public class DownloadGrantService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String COUNTED = "counted";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public DownloadGrantService(@Value("${sharex.download-grant.secret:}") String secret,
+                                @Value("${sharex.download-grant.ttl:15m}") Duration ttl) {
+        this(secret, ttl, Clock.systemUTC());
+    }
+
+    DownloadGrantService(String secret, Duration ttl, Clock clock) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            // Grants then only survive until restart and are not accepted by other instances
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public String issue(FileData fileData) {
+        return issue(fileData, false);
+    }
+
+    // A counted grant is issued by a download that already took a slot from the download limit
+    public String issue(FileData fileData, boolean counted) {
+        long expiresAt = Instant.now(clock).plus(ttl).getEpochSecond();
+        String payload = fileData.getFileId() + "|" + expiresAt + (counted ? "|" + COUNTED : "");
+        return encode(payload.getBytes(StandardCharsets.UTF_8)) + "." + encode(sign(payload, fileData));
+    }
+
+    // Accepts both kinds of grant, a counted one also proves the password
+    public boolean verify(String grant, FileData fileData) {
+        return verifiedPayload(grant, fileData) != null;
+    }
+
+    public boolean verifyCounted(String grant, FileData fileData) {
+        String[] payload = verifiedPayload(grant, fileData);
+        return payload != null && payload.length == 3 && COUNTED.equals(payload[2]);
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    // The payload fields of a grant that is signed, for this file and not expired; null otherwise
+    private String[] verifiedPayload(String grant, FileData fileData) {
+        if (grant == null) {
+            return null;
+        }
+        int dot = grant.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(grant.substring(0, dot)),
+                    StandardCharsets.UTF_8);
+            byte[] signature = Base64.getUrlDecoder().decode(grant.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload, fileData))) {
+                return null;
+            }
+
+            String[] fields = payload.split("\\|");
+            if (fields.length < 2 || fields.length > 3 || !fields[0].equals(fileData.getFileId())) {
+                return null;
+            }
+            return Instant.now(clock).getEpochSecond() < Long.parseLong(fields[1]) ? fields : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The password hash is part of the signed input, so changing the password revokes outstanding grants
+    private byte[] sign(String payload, FileData fileData) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(payload.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            if (fileData.getPasswordHash() != null) {
+                mac.update(fileData.getPasswordHash().getBytes(StandardCharsets.UTF_8));
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,37 @@
+package com.sharex.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadReservation {
+
+    private final String fileId;
+    private final AtomicInteger used;
+    private final AtomicInteger inFlight;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    DownloadReservation(String fileId, AtomicInteger used, AtomicInteger inFlight) {
+        this.fileId = fileId;
+        this.used = used;
+        this.inFlight = inFlight;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    // The slot stays consumed, the download is counted by the caller
+    public void commit() {
+        if (finished.compareAndSet(false, true) && inFlight != null) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Gives the slot back, e.g. when the transfer aborted. No-op once committed.
+    public void release() {
+        if (finished.compareAndSet(false, true) && inFlight != null) {
+            used.decrementAndGet();
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class DownloadReservationService {
+
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    private final Map<String, Permits> permits = new ConcurrentHashMap<>();
+
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${sharex.download-reservation.idle-eviction-ms:300000}")
+    private long idleEvictionMs;
+
+    public Optional<DownloadReservation> tryReserve(FileData fileData) {
+        if (fileData.getDownloadLimit() == null) {
+            return Optional.of(new DownloadReservation(fileData.getFileId(), null, null));
+        }
+
+        while (true) {
+            Permits filePermits = permits.computeIfAbsent(fileData.getFileId(), id -> seed(fileData));
+            filePermits.inFlight.incrementAndGet();
+            if (filePermits.retired) {
+                // Being evicted concurrently, wait for the replacement entry
+                filePermits.inFlight.decrementAndGet();
+                Thread.onSpinWait();
+                continue;
+            }
+
+            filePermits.lastUsed = System.currentTimeMillis();
+            if (filePermits.tryAcquire()) {
+                return Optional.of(new DownloadReservation(fileData.getFileId(), filePermits.used,
+                        filePermits.inFlight));
+            }
+            filePermits.inFlight.decrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    // Raises the local view to what the database (and so other nodes) has already counted
+    @Scheduled(fixedDelayString = "${sharex.download-reservation.reconcile-interval-ms:5000}")
+    public void reconcile() {
+        List<String> fileIds = new ArrayList<>(permits.keySet());
+        for (int from = 0; from < fileIds.size(); from += RECONCILE_BATCH_SIZE) {
+            List<String> batch = fileIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, fileIds.size()));
+            Map<String, Integer> persisted = loadDownloadCounts(batch);
+            long now = System.currentTimeMillis();
+
+            for (String fileId : batch) {
+                Permits filePermits = permits.get(fileId);
+                if (filePermits == null) {
+                    continue;
+                }
+                if (!persisted.containsKey(fileId) || now - filePermits.lastUsed > idleEvictionMs) {
+                    evict(fileId, filePermits);
+                    continue;
+                }
+                int committed = downloadCounterService.currentCount(fileId, persisted.get(fileId));
+                filePermits.used.accumulateAndGet(committed + filePermits.inFlight.get(), Math::max);
+            }
+        }
+    }
+
+    private Permits seed(FileData fileData) {
+        int committed = downloadCounterService.currentCount(fileData.getFileId(), fileData.getDownloadCount());
+        return new Permits(fileData.getDownloadLimit(), committed);
+    }
+
+    private void evict(String fileId, Permits filePermits) {
+        // Retire first, then check for reservations; tryReserve does the mirror image so one of them backs off
+        filePermits.retired = true;
+        if (filePermits.inFlight.get() == 0) {
+            permits.remove(fileId, filePermits);
+        } else {
+            filePermits.retired = false;
+        }
+    }
+
+    private Map<String, Integer> loadDownloadCounts(List<String> fileIds) {
+        String placeholders = String.join(", ", Collections.nCopies(fileIds.size(), "?"));
+        Map<String, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT file_id, download_count FROM files WHERE file_id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> counts.put(rs.getString(1), rs.getInt(2)), fileIds.toArray());
+        return counts;
+    }
+
+    private static final class Permits {
+
+        private final int limit;
+        private final AtomicInteger used;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean retired;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Permits(int limit, int used) {
+            this.limit = limit;
+            this.used = new AtomicInteger(used);
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int current = used.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (used.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.sharex.service;
+
+import com.sharex.config.ConcurrencyLimitedDataSource;
+import com.sharex.model.FileData;
+import com.sharex.repository.FileExpiry;
+import com.sharex.repository.FileRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Deletes files that expired or used up their download limit. Upcoming expiries are loaded ahead of time into a
+// timing wheel; overdue and exhausted files are picked up by periodic indexed scans.
+@Component
+public class ExpiryReaper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpiryReaper.class);
+
+    private static final long TICK_MS = 1000;
+    private static final int WHEEL_SLOTS = 64;
+    private static final int WHEEL_LEVELS = 3;
+
+    private final TimingWheel wheel = new TimingWheel(TICK_MS, WHEEL_SLOTS, WHEEL_LEVELS, System.currentTimeMillis());
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final Map<String, Long> exhaustedSince = new ConcurrentHashMap<>();
+    private volatile LocalDateTime scannedUntil;
+    private volatile long throttledUntil;
+
+    private final LongAdder deletedFiles = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder throttledTicks = new LongAdder();
+    private volatile long lastLagMs;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${sharex.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sharex.reaper.batch-size:100}")
+    private int batchSize;
+
+    @Value("${sharex.reaper.max-batches-per-tick:10}")
+    private int maxBatchesPerTick;
+
+    // Files are kept this long past expiry or exhaustion so downloads already streaming can finish
+    @Value("${sharex.reaper.grace:5m}")
+    private Duration grace;
+
+    @Value("${sharex.reaper.lookahead:1h}")
+    private Duration lookahead;
+
+    // Share of wall time the reaper may spend deleting
+    @Value("${sharex.reaper.duty-cycle:0.25}")
+    private double dutyCycle;
+
+    @Scheduled(fixedDelayString = "${sharex.reaper.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        enqueue(wheel.advance(System.currentTimeMillis()));
+        drain();
+    }
+
+    @Scheduled(fixedDelayString = "${sharex.reaper.scan-interval-ms:60000}",
+               initialDelayString = "${sharex.reaper.initial-delay-ms:10000}")
+    public void scan() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        // Backlog after downtime, and files uploaded into a window that had already been scanned
+        enqueue(fileRepository.findExpiredFileIds(now.minus(grace), PageRequest.of(0, batchSize * maxBatchesPerTick)));
+
+        LocalDateTime from = scannedUntil != null ? scannedUntil : now.minus(grace);
+        LocalDateTime to = now.plus(lookahead);
+        if (to.isAfter(from)) {
+            List<String> dueNow = new ArrayList<>();
+            for (FileExpiry expiry : fileRepository.findExpiringBetween(from, to)) {
+                long deadline = toEpochMilli(expiry.getExpiryDate().plus(grace));
+                if (deadline <= System.currentTimeMillis()) {
+                    dueNow.add(expiry.getFileId());
+                } else {
+                    wheel.schedule(expiry.getFileId(), deadline);
+                }
+            }
+            enqueue(dueNow);
+            scannedUntil = to;
+        }
+
+        scanExhausted();
+    }
+
+    public long getDeletedFileCount() {
+        return deletedFiles.sum();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.sum();
+    }
+
+    // How late the most recently reaped expired file was deleted, measured from its deadline
+    public long getLastLagMs() {
+        return lastLagMs;
+    }
+
+    public long getThrottledTickCount() {
+        return throttledTicks.sum();
+    }
+
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+
+    public int getPendingCount() {
+        pendingLock.lock();
+        try {
+            return pending.size();
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private void scanExhausted() {
+        long now = System.currentTimeMillis();
+        List<String> exhausted = fileRepository.findExhaustedFileIds(PageRequest.of(0, batchSize));
+        exhaustedSince.keySet().retainAll(new HashSet<>(exhausted));
+
+        List<String> due = new ArrayList<>();
+        for (String fileId : exhausted) {
+            Long since = exhaustedSince.putIfAbsent(fileId, now);
+            if (since != null && now - since >= grace.toMillis()) {
+                due.add(fileId);
+            }
+        }
+        enqueue(due);
+    }
+
+    private void enqueue(Collection<String> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        pendingLock.lock();
+        try {
+            pending.addAll(fileIds);
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < maxBatchesPerTick; i++) {
+            if (System.currentTimeMillis() < throttledUntil || isDatabaseBusy()) {
+                throttledTicks.increment();
+                return;
+            }
+            List<String> batch = takeBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            long started = System.currentTimeMillis();
+            reap(batch);
+            long elapsed = System.currentTimeMillis() - started;
+            // Pause long enough that deleting stays within the duty cycle
+            throttledUntil = System.currentTimeMillis() + (long) (elapsed * (1 - dutyCycle) / dutyCycle);
+        }
+    }
+
+    private List<String> takeBatch() {
+        List<String> batch = new ArrayList<>(batchSize);
+        pendingLock.lock();
+        try {
+            Iterator<String> iterator = pending.iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+        return batch;
+    }
+
+    private void reap(List<String> fileIds) {
+        LocalDateTime now = LocalDateTime.now();
+        for (FileData fileData : fileRepository.findAllById(fileIds)) {
+            LocalDateTime deadline = fileData.getExpiryDate() != null ? fileData.getExpiryDate().plus(grace) : null;
+            boolean expired = deadline != null && !deadline.isAfter(now);
+            if (!expired && !isExhausted(fileData)) {
+                // Expiry moved or the count was wrong; a later scan will find it again if needed
+                continue;
+            }
+
+            long reclaimed;
+            try {
+                reclaimed = fileService.deleteFile(fileData);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not reap file {}", fileData.getFileId(), e);
+                continue;
+            }
+            exhaustedSince.remove(fileData.getFileId());
+            if (reclaimed < 0) {
+                // Deleted by its owner in the meantime
+                continue;
+            }
+            deletedFiles.increment();
+            // Zero when the content is still shared with other files through deduplication
+            reclaimedBytes.add(reclaimed);
+            if (expired) {
+                lastLagMs = Duration.between(deadline, now).toMillis();
+            }
+        }
+    }
+
+    private boolean isExhausted(FileData fileData) {
+        return fileData.getDownloadLimit() != null
+                && exhaustedSince.containsKey(fileData.getFileId())
+                && downloadCounterService.currentCount(fileData.getFileId(), fileData.getDownloadCount())
+                    >= fileData.getDownloadLimit();
+    }
+
+    private boolean isDatabaseBusy() {
+        try {
+            if (dataSource.isWrapperFor(ConcurrencyLimitedDataSource.class)
+                    && dataSource.unwrap(ConcurrencyLimitedDataSource.class).getWaitingCount() > 0) {
+                return true;
+            }
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool != null && pool.getThreadsAwaitingConnection() > 0;
+            }
+        } catch (SQLException e) {
+            LOG.debug("Could not inspect the connection pool", e);
+        }
+        return false;
+    }
+
+    private long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
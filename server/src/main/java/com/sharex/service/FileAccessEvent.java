@@ -0,0 +1,40 @@
+package com.sharex.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.sharex.FileAccess")
+@Label("File Access Check")
+@Category({"ShareX", "Download"})
+@Description("Expiry, download limit and password checks before a download")
+@StackTrace(false)
+class FileAccessEvent extends Event {
+
+    @Label("File Id")
+    String fileId;
+
+    @Label("Granted")
+    boolean granted;
+
+    @Label("Grant Used")
+    @Description("A valid download grant stood in for the password")
+    boolean grantUsed;
+
+    @Label("Counter Time")
+    @Timespan
+    long counterDuration;
+
+    @Label("Grant Time")
+    @Timespan
+    long grantDuration;
+
+    @Label("Hash Time")
+    @Description("BCrypt comparison, including the wait for a hashing thread")
+    @Timespan
+    long hashDuration;
+}
@@ -0,0 +1,15 @@
+package com.sharex.service;
+
+// Published after a file row was created, updated or deleted
+public class FileChangedEvent {
+
+    private final String fileId;
+
+    public FileChangedEvent(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+}
@@ -0,0 +1,45 @@
+package com.sharex.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Opaque position in a user's file listing: the (createdAt, fileId) of the last row on the previous page
+public class FileListCursor {
+
+    private final LocalDateTime createdAt;
+    private final String fileId;
+
+    public FileListCursor(LocalDateTime createdAt, String fileId) {
+        this.createdAt = createdAt;
+        this.fileId = fileId;
+    }
+
+    public static FileListCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new FileListCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    value.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String value = createdAt + "|" + fileId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+}
@@ -0,0 +1,120 @@
+package com.sharex.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sharex.dto.FileMetadataResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Caches the persisted metadata of a file; pending download counts are overlaid by the caller
+@Component
+public class FileMetadataCache {
+
+    private final AsyncCache<String, FileMetadataResponse> cache;
+
+    public FileMetadataCache(@Value("${sharex.metadata-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${sharex.metadata-cache.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpiryCappedTtl(ttl))
+                .recordStats()
+                .buildAsync();
+    }
+
+    // The loader runs on the calling thread outside the map, a synchronous Caffeine load would run the query inside
+    // ConcurrentHashMap.compute and pin a virtual thread to its carrier. Concurrent callers wait for the same load.
+    public FileMetadataResponse get(String fileId, Function<String, FileMetadataResponse> loader) {
+        CompletableFuture<FileMetadataResponse> cached = cache.getIfPresent(fileId);
+        if (cached != null) {
+            return join(cached);
+        }
+
+        CompletableFuture<FileMetadataResponse> loading = new CompletableFuture<>();
+        CompletableFuture<FileMetadataResponse> prior = cache.asMap().putIfAbsent(fileId, loading);
+        if (prior != null) {
+            return join(prior);
+        }
+        try {
+            FileMetadataResponse metadata = loader.apply(fileId);
+            // Completing with null drops the entry, missing files are not cached
+            loading.complete(metadata);
+            return metadata;
+        } catch (RuntimeException e) {
+            cache.asMap().remove(fileId, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidate(String fileId) {
+        cache.synchronous().invalidate(fileId);
+    }
+
+    @EventListener
+    public void onFileChanged(FileChangedEvent event) {
+        invalidate(event.getFileId());
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private static FileMetadataResponse join(CompletableFuture<FileMetadataResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Entries never outlive the file, so an expired share is re-read instead of served from memory
+    private static final class ExpiryCappedTtl implements Expiry<String, FileMetadataResponse> {
+
+        private final Duration ttl;
+
+        private ExpiryCappedTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        @Override
+        public long expireAfterCreate(String fileId, FileMetadataResponse metadata, long currentTime) {
+            LocalDateTime expiryDate = metadata.getExpiryDate();
+            if (expiryDate == null) {
+                return ttl.toNanos();
+            }
+            Duration untilExpiry = Duration.between(LocalDateTime.now(), expiryDate);
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return untilExpiry.compareTo(ttl) < 0 ? untilExpiry.toNanos() : ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String fileId, FileMetadataResponse metadata, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(fileId, metadata, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String fileId, FileMetadataResponse metadata, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.sharex.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sharex.dto.FileMetadataResponse;
+import com.sharex.dto.UserFilePageResponse;
 import com.sharex.dto.UserFileResponse;
+import com.sharex.model.ContentBlob;
 import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStage;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
 import com.sharex.repository.FileRepository;
+import com.sharex.repository.FileSummary;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class FileService {
@@ -23,61 +39,219 @@ public class FileService {
     @Autowired
     private FileRepository fileRepository;
 
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private DownloadCounterService downloadCounterService;
+
+    @Autowired
+    private DownloadReservationService downloadReservationService;
+
+    @Autowired
+    private DownloadGrantService downloadGrantService;
+
+    @Autowired
+    private FileMetadataCache fileMetadataCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${sharex.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    // Ranges of gzip-stored content are served by decoding from the start, so larger files are stored as they are
+    @Value("${sharex.compression.max-size:16MB}")
+    private DataSize compressionMaxSize;
+
+    @Value("${sharex.processing.enabled:true}")
+    private boolean processingEnabled;
+
+    @Value("${sharex.listing.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${sharex.listing.max-page-size:200}")
+    private int maxPageSize;
 
     public String uploadFile(MultipartFile file, String userId, String password, 
-                           Integer downloadLimit, LocalDateTime expiryDate) throws IOException {
+                           Integer downloadLimit, LocalDateTime expiryDate, Boolean compress) throws IOException {
+        UploadEvent event = new UploadEvent();
+        event.begin();
+        // Hash first, so an overloaded hashing pool rejects the upload before its content is stored
+        long hashStart = System.nanoTime();
+        String passwordHash = hashPassword(password);
+        event.hashDuration = System.nanoTime() - hashStart;
+
+        UploadOptions options = new UploadOptions();
+        options.setUserId(userId);
+        options.setPasswordHash(passwordHash);
+        options.setDownloadLimit(downloadLimit);
+        options.setExpiryDate(expiryDate);
+        options.setCompress(compress);
+        try (InputStream in = file.getInputStream()) {
+            return storeFile(in, file.getSize(), file.getOriginalFilename(), options, event);
+        }
+    }
+
+    public String hashPassword(String password) {
+        if (password == null || password.trim().isEmpty()) {
+            return null;
+        }
+        return passwordHashingService.encode(password);
+    }
+
+    // Content over the compression size limit is never compressed
+    public String storeFile(InputStream in, long expectedSize, String originalFileName, UploadOptions options)
+            throws IOException {
+        UploadEvent event = new UploadEvent();
+        event.begin();
+        return storeFile(in, expectedSize, originalFileName, options, event);
+    }
+
+    private String storeFile(InputStream in, long expectedSize, String originalFileName, UploadOptions options,
+                             UploadEvent event) throws IOException {
         String fileId = UUID.randomUUID().toString();
-        byte[] content = file.getBytes();
-        
-        FileData fileData = new FileData(fileId, file.getOriginalFilename(), content, userId);
+        long storeStart = System.nanoTime();
+        Boolean compress = options.getCompress();
+        boolean compressible = (compress != null ? compress : compressionEnabled)
+                && expectedSize <= compressionMaxSize.toBytes();
+        ContentBlob content = contentService.store(in, compressible);
+        long persistStart = System.nanoTime();
         
-        if (password != null && !password.trim().isEmpty()) {
-            fileData.setPasswordHash(passwordEncoder.encode(password));
-        }
+        FileData fileData = new FileData(fileId, originalFileName, content.getStorageKey(),
+                content.getSizeBytes(), options.getUserId());
+        fileData.setContentDigest(content.getDigest());
+        fileData.setContentEncoding(content.getEncoding());
+        fileData.setStoredSizeBytes(content.getStoredSizeBytes());
+        fileData.setPasswordHash(options.getPasswordHash());
         
+        Integer downloadLimit = options.getDownloadLimit();
         if (downloadLimit != null && downloadLimit > 0) {
             fileData.setDownloadLimit(downloadLimit);
         }
         
-        if (expiryDate != null) {
-            fileData.setExpiryDate(expiryDate);
+        if (options.getExpiryDate() != null) {
+            fileData.setExpiryDate(options.getExpiryDate());
         }
 
-        fileRepository.save(fileData);
+        if (processingEnabled) {
+            fileData.setProcessingStatus(ProcessingStatus.PENDING);
+            fileData.setProcessingStage(ProcessingStage.values()[0]);
+            fileData.setProcessingAttempts(0);
+            fileData.setProcessingNextAttemptAt(LocalDateTime.now());
+        }
+
+        try {
+            fileRepository.save(fileData);
+        } catch (RuntimeException e) {
+            contentService.release(content.getDigest(), content.getStorageKey());
+            throw e;
+        }
+        event.persistDuration = System.nanoTime() - persistStart;
+        eventPublisher.publishEvent(new FileChangedEvent(fileId));
+        eventPublisher.publishEvent(new FileUploadedEvent(fileId));
+
+        // Only successful uploads are recorded
+        event.fileId = fileId;
+        event.bytes = content.getSizeBytes();
+        event.storedBytes = content.getStoredSizeBytes();
+        event.storeDuration = persistStart - storeStart;
+        event.commit();
         return fileId;
     }
 
+    // Returns the stored bytes freed in the blob store, 0 if the content is still shared with other files, or -1 if
+    // the file was already gone, e.g. deleted by its owner and a reaper at the same time. Only the caller whose delete
+    // removed the row releases the content, and it releases what the row held at that moment, which may include a
+    // preview stored after fileData was loaded.
+    public long deleteFile(FileData fileData) throws IOException {
+        FileData deleted = transactionTemplate.execute(status -> {
+            Optional<FileData> current = fileRepository.findByIdForUpdate(fileData.getFileId());
+            if (current.isEmpty() || fileRepository.deleteByFileId(fileData.getFileId()) == 0) {
+                return null;
+            }
+            return current.get();
+        });
+        if (deleted == null) {
+            return -1;
+        }
+
+        eventPublisher.publishEvent(new FileChangedEvent(deleted.getFileId()));
+        long reclaimed = 0;
+        if (contentService.release(deleted.getContentDigest(), deleted.getStorageKey())) {
+            Long storedSize = deleted.getStoredSizeBytes() != null ? deleted.getStoredSizeBytes()
+                    : deleted.getSizeBytes();
+            reclaimed = storedSize != null ? storedSize : 0;
+        }
+        if (deleted.getPreviewKey() != null) {
+            contentService.release(deleted.getPreviewDigest(), deleted.getPreviewKey());
+        }
+        return reclaimed;
+    }
+
     public Optional<FileData> getFile(String fileId) {
         return fileRepository.findById(fileId);
     }
 
     public boolean validateFileAccess(FileData fileData, String password) {
-        if (fileData.getExpiryDate() != null && fileData.getExpiryDate().isBefore(LocalDateTime.now())) {
-            return false;
-        }
+        return validateFileAccess(fileData, password, null);
+    }
 
-        if (fileData.getDownloadLimit() != null && 
-            fileData.getDownloadCount() >= fileData.getDownloadLimit()) {
-            return false;
-        }
+    public boolean validateFileAccess(FileData fileData, String password, String grant) {
+        FileAccessEvent event = new FileAccessEvent();
+        event.begin();
+        event.fileId = fileData.getFileId();
+        event.granted = checkFileAccess(fileData, password, grant, event);
+        event.commit();
+        return event.granted;
+    }
 
-        if (fileData.getPasswordHash() != null) {
-            if (password == null || !passwordEncoder.matches(password, fileData.getPasswordHash())) {
-                return false;
-            }
-        }
+    public boolean hasValidDownloadGrant(FileData fileData, String grant) {
+        return downloadGrantService.verify(grant, fileData);
+    }
+
+    public String issueDownloadGrant(FileData fileData) {
+        return downloadGrantService.issue(fileData);
+    }
+
+    // True if the grant comes from a download of this file that was already counted against its limit
+    public boolean hasCountedDownloadGrant(FileData fileData, String grant) {
+        return downloadGrantService.verifyCounted(grant, fileData);
+    }
+
+    public String issueCountedDownloadGrant(FileData fileData) {
+        return downloadGrantService.issue(fileData, true);
+    }
+
+    public Duration getDownloadGrantTtl() {
+        return downloadGrantService.getTtl();
+    }
+
+    public Optional<DownloadReservation> reserveDownload(FileData fileData) {
+        return downloadReservationService.tryReserve(fileData);
+    }
 
-        return true;
+    public void completeDownload(DownloadReservation reservation) {
+        // Count before committing so reconciliation never sees the slot free and the download uncounted
+        incrementDownloadCount(reservation.getFileId());
+        reservation.commit();
     }
 
     public void incrementDownloadCount(String fileId) {
-        Optional<FileData> fileOpt = fileRepository.findById(fileId);
-        if (fileOpt.isPresent()) {
-            FileData fileData = fileOpt.get();
-            fileData.setDownloadCount(fileData.getDownloadCount() + 1);
-            fileRepository.save(fileData);
-        }
+        DownloadCountEvent event = new DownloadCountEvent();
+        event.begin();
+        downloadCounterService.increment(fileId);
+        event.fileId = fileId;
+        event.commit();
     }
 
     public List<FileData> getUserFiles(String userId) {
@@ -86,44 +260,151 @@ public class FileService {
 
     @Transactional(readOnly = true)
     public List<UserFileResponse> getUserFilesForProfile(String userId) {
-        List<Object[]> files = fileRepository.findByUserIdWithoutContent(userId);
+        List<FileSummary> files = fileRepository.findSummariesByUserId(userId);
         return files.stream()
-                .map(row -> new UserFileResponse(
-                    (String) row[0],
-                    (String) row[1],
-                    row[3] != null,
-                    (Integer) row[4],
-                    (Integer) row[5],
-                    (LocalDateTime) row[6],
-                    (LocalDateTime) row[7]
-                ))
+                .map(this::toUserFileResponse)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public UserFilePageResponse getUserFilesPage(String userId, String cursor, Integer limit) {
+        int pageSize = limit != null ? Math.min(Math.max(limit, 1), maxPageSize) : defaultPageSize;
+        // One extra row tells whether another page follows without a count query
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+
+        List<FileSummary> rows;
+        if (cursor == null) {
+            rows = fileRepository.findFirstSummaryPage(userId, page);
+        } else {
+            FileListCursor position = FileListCursor.decode(cursor);
+            rows = fileRepository.findSummaryPageAfter(userId, position.getCreatedAt(), position.getFileId(), page);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<FileSummary> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            FileSummary last = pageRows.get(pageRows.size() - 1);
+            nextCursor = new FileListCursor(last.getCreatedAt(), last.getFileId()).encode();
+        }
+        return new UserFilePageResponse(pageRows.stream().map(this::toUserFileResponse).collect(Collectors.toList()),
+                nextCursor);
+    }
+
+    // Writes one JSON document per line while the database cursor advances, nothing is collected in memory
+    @Transactional(readOnly = true)
+    public void streamUserFilesForProfile(String userId, OutputStream out) throws IOException {
+        try (Stream<FileSummary> files = fileRepository.streamSummariesByUserId(userId)) {
+            Iterator<FileSummary> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(toUserFileResponse(iterator.next())));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
     @Transactional(readOnly = true)
     public long getUserFileCount(String userId) {
         return fileRepository.countByUserId(userId);
     }
 
     public FileMetadataResponse getFileMetadata(String fileId) {
-        Optional<FileData> fileOpt = fileRepository.findById(fileId);
+        FileMetadataResponse persisted = fileMetadataCache.get(fileId, this::loadFileMetadata);
+        if (persisted == null) {
+            return null;
+        }
+
+        // The cached copy is shared, hand out a new one with this node's unflushed downloads added
+        return FileMetadataResponse.builder()
+                .fileId(persisted.getFileId())
+                .originalFileName(persisted.getOriginalFileName())
+                .fileSize(persisted.getFileSize())
+                .userId(persisted.getUserId())
+                .hasPassword(persisted.isHasPassword())
+                .downloadLimit(persisted.getDownloadLimit())
+                .downloadCount(downloadCounterService.currentCount(fileId, persisted.getDownloadCount()))
+                .expiryDate(persisted.getExpiryDate())
+                .createdAt(persisted.getCreatedAt())
+                .processingStatus(persisted.getProcessingStatus())
+                .checksumVerified(persisted.getChecksumVerified())
+                .scanResult(persisted.getScanResult())
+                .mimeType(persisted.getMimeType())
+                .previewAvailable(persisted.isPreviewAvailable());
+    }
+
+    private boolean checkFileAccess(FileData fileData, String password, String grant, FileAccessEvent event) {
+        if (fileData.getExpiryDate() != null && fileData.getExpiryDate().isBefore(LocalDateTime.now())) {
+            return false;
+        }
+
+        if (fileData.getScanResult() == ScanResult.INFECTED) {
+            return false;
+        }
+
+        if (fileData.getDownloadLimit() != null) {
+            long counterStart = System.nanoTime();
+            int downloadCount = downloadCounterService.currentCount(fileData.getFileId(), fileData.getDownloadCount());
+            event.counterDuration = System.nanoTime() - counterStart;
+            // A counted grant belongs to a segmented download that already took its slot, possibly the last one
+            if (downloadCount >= fileData.getDownloadLimit()
+                    && !downloadGrantService.verifyCounted(grant, fileData)) {
+                return false;
+            }
+        }
+
+        if (fileData.getPasswordHash() == null) {
+            return true;
+        }
+
+        long grantStart = System.nanoTime();
+        event.grantUsed = downloadGrantService.verify(grant, fileData);
+        long hashStart = System.nanoTime();
+        event.grantDuration = hashStart - grantStart;
+        if (event.grantUsed) {
+            return true;
+        }
+
+        boolean matches = password != null && passwordHashingService.matches(password, fileData.getPasswordHash());
+        event.hashDuration = System.nanoTime() - hashStart;
+        return matches;
+    }
+
+    private UserFileResponse toUserFileResponse(FileSummary file) {
+        return new UserFileResponse(
+            file.getFileId(),
+            file.getOriginalFileName(),
+            Boolean.TRUE.equals(file.getPasswordProtected()),
+            file.getDownloadLimit(),
+            downloadCounterService.currentCount(file.getFileId(), file.getDownloadCount()),
+            file.getExpiryDate(),
+            file.getCreatedAt()
+        );
+    }
+
+    private FileMetadataResponse loadFileMetadata(String fileId) {
+        Optional<FileSummary> fileOpt = fileRepository.findSummaryById(fileId);
         if (fileOpt.isEmpty()) {
             return null;
         }
 
-        FileData fileData = fileOpt.get();
-        long fileSize = fileData.getContent() != null ? fileData.getContent().length : 0;
-        boolean hasPassword = fileData.getPasswordHash() != null;
+        FileSummary file = fileOpt.get();
+        long fileSize = file.getSizeBytes() != null ? file.getSizeBytes() : 0;
 
         return FileMetadataResponse.builder()
-                .fileId(fileData.getFileId())
-                .originalFileName(fileData.getOriginalFileName())
+                .fileId(file.getFileId())
+                .originalFileName(file.getOriginalFileName())
                 .fileSize(fileSize)
-                .userId(fileData.getUserId())
-                .hasPassword(hasPassword)
-                .downloadLimit(fileData.getDownloadLimit())
-                .downloadCount(fileData.getDownloadCount())
-                .expiryDate(fileData.getExpiryDate())
-                .createdAt(fileData.getCreatedAt());
+                .userId(file.getUserId())
+                .hasPassword(Boolean.TRUE.equals(file.getPasswordProtected()))
+                .downloadLimit(file.getDownloadLimit())
+                .downloadCount(file.getDownloadCount())
+                .expiryDate(file.getExpiryDate())
+                .createdAt(file.getCreatedAt())
+                .processingStatus(file.getProcessingStatus() != null ? file.getProcessingStatus().name() : null)
+                .checksumVerified(file.getChecksumVerified())
+                .scanResult(file.getScanResult() != null ? file.getScanResult().name() : null)
+                .mimeType(file.getMimeType())
+                .previewAvailable(Boolean.TRUE.equals(file.getPreviewAvailable()));
     }
 } 
@@ -0,0 +1,15 @@
+package com.sharex.service;
+
+// Published once an uploaded file's row has been saved, starts the post-upload pipeline
+public class FileUploadedEvent {
+
+    private final String fileId;
+
+    public FileUploadedEvent(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+}
@@ -0,0 +1,100 @@
+package com.sharex.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count-min sketch of recent access frequency with 4-bit style saturation and periodic halving, as used by TinyLFU.
+// Counters are updated with CAS so downloads never wait on each other; halving runs on the aging executor.
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb7e15163, 0x8f1bbcdc, 0x61c88647};
+
+    // DEPTH rows of width counters, row after row
+    private final AtomicIntegerArray table;
+    private final int width;
+    private final int mask;
+    private final int sampleSize;
+    private final LongAdder additions = new LongAdder();
+    private final AtomicBoolean resetScheduled = new AtomicBoolean();
+    private final Executor agingExecutor;
+
+    FrequencySketch(int expectedEntries, Executor agingExecutor) {
+        this.width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+        this.table = new AtomicIntegerArray(DEPTH * width);
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+        this.agingExecutor = agingExecutor;
+    }
+
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            added |= incrementAt(row * width + indexOf(hash, row));
+        }
+        if (!added) {
+            return;
+        }
+        additions.increment();
+        if (additions.sum() >= sampleSize && resetScheduled.compareAndSet(false, true)) {
+            try {
+                agingExecutor.execute(this::reset);
+            } catch (RejectedExecutionException e) {
+                resetScheduled.set(false);
+            }
+        }
+    }
+
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, table.get(row * width + indexOf(hash, row)));
+        }
+        return frequency;
+    }
+
+    // Halves every counter so files that were popular a while ago lose their advantage over new ones. Increments
+    // racing with it land either before or after their counter is halved, which the sketch is approximate enough
+    // to absorb.
+    private void reset() {
+        try {
+            for (int i = 0; i < table.length(); i++) {
+                int count;
+                do {
+                    count = table.get(i);
+                } while (count > 0 && !table.compareAndSet(i, count, count >>> 1));
+            }
+            long current = additions.sum();
+            additions.add(-(current - current / 2));
+        } finally {
+            resetScheduled.set(false);
+        }
+    }
+
+    private boolean incrementAt(int index) {
+        int count;
+        do {
+            count = table.get(index);
+            if (count >= MAX_COUNT) {
+                return false;
+            }
+        } while (!table.compareAndSet(index, count, count + 1));
+        return true;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 15);
+    }
+}
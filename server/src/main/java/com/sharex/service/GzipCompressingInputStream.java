@@ -0,0 +1,79 @@
+package com.sharex.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+// Reads as the gzip encoding of the source, so compressed content can be handed to BlobStore.write as a stream
+class GzipCompressingInputStream extends InputStream {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater;
+    private final DeflaterInputStream body;
+    private ByteBuffer pending = ByteBuffer.wrap(HEADER);
+    private boolean bodyDone;
+    private long uncompressedSize;
+
+    GzipCompressingInputStream(InputStream source, int level) {
+        this.deflater = new Deflater(level, true);
+        this.body = new DeflaterInputStream(new CheckedInputStream(source, crc), deflater, BUFFER_SIZE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            if (pending.hasRemaining()) {
+                int count = Math.min(length, pending.remaining());
+                pending.get(buffer, offset, count);
+                return count;
+            }
+            if (bodyDone) {
+                return -1;
+            }
+
+            int read = body.read(buffer, offset, length);
+            if (read > 0) {
+                return read;
+            }
+            if (read < 0) {
+                bodyDone = true;
+                uncompressedSize = deflater.getBytesRead();
+                pending = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt((int) crc.getValue())
+                        .putInt((int) uncompressedSize)
+                        .flip();
+            }
+        }
+    }
+
+    // Valid once the stream has been read to the end
+    long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
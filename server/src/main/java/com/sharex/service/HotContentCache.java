@@ -0,0 +1,235 @@
+package com.sharex.service;
+
+import com.sharex.storage.BlobLocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps the bodies of frequently downloaded blobs in direct buffers, outside the Java heap
+@Component
+public class HotContentCache {
+
+    private static final long SKETCH_BYTES_PER_ENTRY = 64 * 1024;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final FrequencySketch sketch;
+
+    private final Map<String, ByteBuffer> entries = new ConcurrentHashMap<>();
+    // Admission order, the head is the first eviction candidate; guarded by lock
+    private final LinkedHashMap<String, ByteBuffer> queue = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Keys being read from disk, so an invalidation during the read keeps the old body out; guarded by lock
+    private final Map<String, PendingLoad> pendingLoads = new HashMap<>();
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public HotContentCache(@Value("${sharex.download.hot-cache.max-size:256MB}") DataSize maxSize,
+                           @Value("${sharex.download.hot-cache.max-entry-size:8MB}") DataSize maxEntrySize) {
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), Math.min(maxBytes, Integer.MAX_VALUE));
+        // Aging walks the whole sketch, so it runs in the background like Caffeine's own maintenance
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / SKETCH_BYTES_PER_ENTRY)),
+                ForkJoinPool.commonPool());
+    }
+
+    // Returns a read-only view of the cached body, loading it if the blob is popular enough to earn a place
+    public Optional<ByteBuffer> getOrLoad(String storageKey, BlobLocation location) throws IOException {
+        if (maxBytes <= 0) {
+            return Optional.empty();
+        }
+
+        sketch.increment(storageKey);
+        ByteBuffer cached = entries.get(storageKey);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached.asReadOnlyBuffer());
+        }
+        misses.increment();
+
+        long size = location.getLength();
+        if (size > maxEntryBytes) {
+            return Optional.empty();
+        }
+        Long generation = startLoad(storageKey, size);
+        if (generation == null) {
+            return Optional.empty();
+        }
+
+        try {
+            ByteBuffer loaded = load(location);
+            return Optional.ofNullable(admit(storageKey, loaded, generation)).map(ByteBuffer::asReadOnlyBuffer);
+        } finally {
+            finishLoad(storageKey);
+        }
+    }
+
+    public void invalidate(String storageKey) {
+        lock.lock();
+        try {
+            ByteBuffer removed = queue.remove(storageKey);
+            if (removed != null) {
+                entries.remove(storageKey);
+                usedBytes -= removed.capacity();
+            }
+            PendingLoad pending = pendingLoads.get(storageKey);
+            if (pending != null) {
+                pending.generation++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    // Cheap pre-check so a rejected candidate is never read from disk. Returns the key's invalidation generation
+    // to hand to admit, or null when the candidate is not worth loading.
+    private Long startLoad(String storageKey, long size) {
+        lock.lock();
+        try {
+            if (selectVictims(storageKey, size) == null) {
+                return null;
+            }
+            PendingLoad pending = pendingLoads.computeIfAbsent(storageKey, key -> new PendingLoad());
+            pending.loads++;
+            return pending.generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finishLoad(String storageKey) {
+        lock.lock();
+        try {
+            PendingLoad pending = pendingLoads.get(storageKey);
+            if (--pending.loads == 0) {
+                pendingLoads.remove(storageKey);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer admit(String storageKey, ByteBuffer loaded, long generation) {
+        lock.lock();
+        try {
+            if (pendingLoads.get(storageKey).generation != generation) {
+                // Invalidated while it was read, the body may belong to a deleted blob
+                return null;
+            }
+
+            ByteBuffer existing = queue.get(storageKey);
+            if (existing != null) {
+                // Loaded concurrently by another download
+                return existing;
+            }
+
+            List<String> victims = selectVictims(storageKey, loaded.capacity());
+            if (victims == null) {
+                return null;
+            }
+            for (String victim : victims) {
+                ByteBuffer evicted = queue.remove(victim);
+                entries.remove(victim);
+                usedBytes -= evicted.capacity();
+            }
+            queue.put(storageKey, loaded);
+            entries.put(storageKey, loaded);
+            usedBytes += loaded.capacity();
+            return loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // TinyLFU admission: the candidate only displaces entries it has been requested more often than. Must hold lock.
+    private List<String> selectVictims(String storageKey, long size) {
+        List<String> victims = new ArrayList<>();
+        long free = maxBytes - usedBytes;
+        if (free >= size) {
+            return victims;
+        }
+
+        int candidateFrequency = sketch.frequency(storageKey);
+        Iterator<Map.Entry<String, ByteBuffer>> iterator = queue.entrySet().iterator();
+        while (free < size && iterator.hasNext()) {
+            Map.Entry<String, ByteBuffer> victim = iterator.next();
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                // The resident entry is still hotter, give it another round at the back of the queue
+                iterator.remove();
+                queue.put(victim.getKey(), victim.getValue());
+                rejections.increment();
+                return null;
+            }
+            victims.add(victim.getKey());
+            free += victim.getValue().capacity();
+        }
+        return free >= size ? victims : null;
+    }
+
+    // Package-private so tests can invalidate a key in the middle of its load
+    ByteBuffer load(BlobLocation location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) location.getLength());
+        try (FileChannel channel = FileChannel.open(location.getPath(), StandardOpenOption.READ)) {
+            long position = location.getOffset();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    throw new EOFException("Unexpected end of stored content");
+                }
+                position += read;
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static final class PendingLoad {
+
+        private int loads;
+        private long generation;
+    }
+}
@@ -0,0 +1,160 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Moves bytes left in the old files.content column into the blob store, one row at a time
+@Component
+public class LegacyContentMigrator implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LegacyContentMigrator.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Value("${sharex.storage.migrate-legacy-content:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            return;
+        }
+
+        String column;
+        String columnType;
+        try (Connection connection = dataSource.getConnection()) {
+            String[] legacy = findContentColumn(connection.getMetaData());
+            if (legacy == null) {
+                return;
+            }
+            column = legacy[0];
+            columnType = legacy[1];
+        }
+
+        List<String> fileIds = pendingFileIds(column);
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        LOG.info("Migrating {} files from files.{} to the blob store", fileIds.size(), column);
+
+        int migrated = 0;
+        for (String fileId : fileIds) {
+            try {
+                if (migrate(fileId, column, "oid".equalsIgnoreCase(columnType))) {
+                    migrated++;
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                LOG.warn("Could not migrate content of file {}", fileId, e);
+            }
+        }
+        // On PostgreSQL the large objects behind oid columns are not freed by nulling the column, run vacuumlo
+        LOG.info("Migrated {} of {} files", migrated, fileIds.size());
+    }
+
+    private String[] findContentColumn(DatabaseMetaData metaData) throws SQLException {
+        for (String table : new String[] {"files", "FILES"}) {
+            for (String column : new String[] {"content", "CONTENT"}) {
+                try (ResultSet rs = metaData.getColumns(null, null, table, column)) {
+                    if (rs.next()) {
+                        return new String[] {rs.getString("COLUMN_NAME"), rs.getString("TYPE_NAME")};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<String> pendingFileIds(String column) throws SQLException {
+        List<String> fileIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT file_id FROM files WHERE " + column + " IS NOT NULL AND storage_key IS NULL");
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                fileIds.add(rs.getString(1));
+            }
+        }
+        return fileIds;
+    }
+
+    private boolean migrate(String fileId, String column, boolean largeObject) throws SQLException, IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            // Large objects can only be read inside a transaction
+            connection.setAutoCommit(false);
+            try {
+                ContentBlob blob = null;
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT " + column + " FROM files WHERE file_id = ? AND storage_key IS NULL FOR UPDATE")) {
+                    select.setString(1, fileId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next()) {
+                            blob = store(rs, largeObject);
+                        }
+                    }
+                }
+                if (blob == null) {
+                    connection.rollback();
+                    return false;
+                }
+
+                try (PreparedStatement update = connection.prepareStatement(
+                        "UPDATE files SET storage_key = ?, size_bytes = ?, content_digest = ?, " + column
+                                + " = NULL WHERE file_id = ?")) {
+                    update.setString(1, blob.getStorageKey());
+                    update.setLong(2, blob.getSizeBytes());
+                    update.setString(3, blob.getDigest());
+                    update.setString(4, fileId);
+                    update.executeUpdate();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    contentService.release(blob.getDigest(), blob.getStorageKey());
+                    throw e;
+                }
+                return true;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private ContentBlob store(ResultSet rs, boolean largeObject) throws SQLException, IOException {
+        if (largeObject) {
+            Blob lob = rs.getBlob(1);
+            if (lob == null) {
+                return null;
+            }
+            try (InputStream in = lob.getBinaryStream()) {
+                return contentService.store(in);
+            } finally {
+                lob.free();
+            }
+        }
+        try (InputStream in = rs.getBinaryStream(1)) {
+            return in != null ? contentService.store(in) : null;
+        }
+    }
+}
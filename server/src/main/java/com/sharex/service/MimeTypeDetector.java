@@ -0,0 +1,143 @@
+package com.sharex.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+// Sniffs the type from the leading bytes and only trusts the file name for what the bytes cannot tell apart,
+// such as which kind of text a text file is or which format a zip container holds
+public final class MimeTypeDetector {
+
+    public static final int SNIFF_LENGTH = 8 * 1024;
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    private static final String TEXT_PLAIN = "text/plain";
+    private static final String ZIP = "application/zip";
+
+    private static final Object[][] SIGNATURES = {
+        {new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}, "image/png"},
+        {new byte[] {(byte) 0xff, (byte) 0xd8, (byte) 0xff}, "image/jpeg"},
+        {new byte[] {'G', 'I', 'F', '8'}, "image/gif"},
+        {new byte[] {'B', 'M'}, "image/bmp"},
+        {new byte[] {'%', 'P', 'D', 'F', '-'}, "application/pdf"},
+        {new byte[] {'P', 'K', 0x03, 0x04}, ZIP},
+        {new byte[] {0x1f, (byte) 0x8b}, "application/gzip"},
+        {new byte[] {'7', 'z', (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c}, "application/x-7z-compressed"},
+        {new byte[] {'R', 'a', 'r', '!', 0x1a, 0x07}, "application/vnd.rar"},
+        {new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}, "application/zstd"},
+        {new byte[] {'O', 'g', 'g', 'S'}, "audio/ogg"},
+        {new byte[] {'I', 'D', '3'}, "audio/mpeg"},
+        {new byte[] {'f', 'L', 'a', 'C'}, "audio/flac"},
+        {new byte[] {0x1a, 0x45, (byte) 0xdf, (byte) 0xa3}, "video/webm"},
+        {new byte[] {0x7f, 'E', 'L', 'F'}, "application/x-elf"},
+        {new byte[] {'M', 'Z'}, "application/x-msdownload"}
+    };
+
+    // Formats stored in a zip container, told apart by extension
+    private static final Map<String, String> ZIP_BASED = Map.of(
+            "docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "odt", "application/vnd.oasis.opendocument.text",
+            "epub", "application/epub+zip",
+            "jar", "application/java-archive",
+            "apk", "application/vnd.android.package-archive");
+
+    private static final Map<String, String> TEXT_BASED = Map.of(
+            "json", "application/json",
+            "xml", "application/xml",
+            "html", "text/html",
+            "htm", "text/html",
+            "csv", "text/csv",
+            "md", "text/markdown",
+            "svg", "image/svg+xml",
+            "js", "text/javascript",
+            "css", "text/css",
+            "yml", "application/yaml");
+
+    private MimeTypeDetector() { }
+
+    public static String detect(byte[] head, String fileName) {
+        String extension = extension(fileName);
+        String sniffed = sniff(head);
+        if (sniffed != null) {
+            return sniffed.equals(ZIP) ? ZIP_BASED.getOrDefault(extension, ZIP) : sniffed;
+        }
+        if (isText(head)) {
+            return TEXT_BASED.getOrDefault(extension, TEXT_PLAIN);
+        }
+        return OCTET_STREAM;
+    }
+
+    public static boolean isTextual(String mimeType) {
+        return mimeType != null && (mimeType.startsWith("text/") || TEXT_BASED.containsValue(mimeType));
+    }
+
+    private static String sniff(byte[] head) {
+        for (Object[] signature : SIGNATURES) {
+            if (startsWith(head, (byte[]) signature[0], 0)) {
+                return (String) signature[1];
+            }
+        }
+        if (startsWith(head, new byte[] {'R', 'I', 'F', 'F'}, 0)
+                && startsWith(head, new byte[] {'W', 'E', 'B', 'P'}, 8)) {
+            return "image/webp";
+        }
+        if (startsWith(head, new byte[] {'f', 't', 'y', 'p'}, 4)) {
+            return "video/mp4";
+        }
+        return null;
+    }
+
+    // No NUL bytes and valid UTF-8, allowing for a character cut off at the end of the sample
+    private static boolean isText(byte[] head) {
+        if (head.length == 0) {
+            return false;
+        }
+        for (byte b : head) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        int length = head.length;
+        for (int trailing = 0; trailing < 4 && length > 0; trailing++) {
+            try {
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(head, 0, length));
+                return true;
+            } catch (CharacterCodingException e) {
+                if (head.length < SNIFF_LENGTH) {
+                    // The whole file was sampled, nothing was cut off
+                    return false;
+                }
+                length--;
+            }
+        }
+        return false;
+    }
+
+    private static String extension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix, int offset) {
+        if (bytes.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
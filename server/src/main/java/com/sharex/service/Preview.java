@@ -0,0 +1,21 @@
+package com.sharex.service;
+
+// A small stand-in for a file's content: a thumbnail or its leading text
+public class Preview {
+
+    private final byte[] content;
+    private final String contentType;
+
+    public Preview(byte[] content, String contentType) {
+        this.content = content;
+        this.contentType = contentType;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
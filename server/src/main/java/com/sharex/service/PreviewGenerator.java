@@ -0,0 +1,194 @@
+package com.sharex.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Component
+public class PreviewGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PreviewGenerator.class);
+
+    private static final Set<String> IMAGE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/bmp");
+    private static final String TEXT_PREVIEW_TYPE = "text/plain; charset=UTF-8";
+    private static final String PDF = "application/pdf";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${sharex.processing.preview.text-size:4KB}")
+    private DataSize textSize;
+
+    // Longest edge of a thumbnail in pixels
+    @Value("${sharex.processing.preview.image-size:320}")
+    private int imageSize;
+
+    // Images with more pixels are not decoded at all
+    @Value("${sharex.processing.preview.max-image-pixels:50000000}")
+    private long maxImagePixels;
+
+    // PDFs are parsed in memory, larger ones get no summary
+    @Value("${sharex.processing.preview.max-pdf-size:32MB}")
+    private DataSize maxPdfSize;
+
+    public boolean supports(String mimeType) {
+        return IMAGE_TYPES.contains(mimeType) || PDF.equals(mimeType) || MimeTypeDetector.isTextual(mimeType);
+    }
+
+    // Empty when the content turns out not to be previewable, e.g. an image too large or too broken to decode
+    public Optional<Preview> generate(String mimeType, InputStream content) throws IOException {
+        if (IMAGE_TYPES.contains(mimeType)) {
+            return thumbnail(content);
+        }
+        if (PDF.equals(mimeType)) {
+            return pdfSummary(content);
+        }
+        if (MimeTypeDetector.isTextual(mimeType)) {
+            return leadingText(content);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Preview> leadingText(InputStream content) throws IOException {
+        byte[] head = content.readNBytes((int) textSize.toBytes());
+        return Optional.of(new Preview(Arrays.copyOf(head, utf8Boundary(head)), TEXT_PREVIEW_TYPE));
+    }
+
+    // Page count, first page size in points and the document information, as JSON
+    private Optional<Preview> pdfSummary(InputStream content) throws IOException {
+        byte[] document = content.readNBytes((int) maxPdfSize.toBytes() + 1);
+        if (document.length > maxPdfSize.toBytes()) {
+            return Optional.empty();
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        try (PDDocument pdf = Loader.loadPDF(document)) {
+            summary.put("version", pdf.getVersion());
+            summary.put("pageCount", pdf.getNumberOfPages());
+            if (pdf.getNumberOfPages() > 0) {
+                PDPage firstPage = pdf.getPage(0);
+                PDRectangle mediaBox = firstPage.getMediaBox();
+                summary.put("width", mediaBox.getWidth());
+                summary.put("height", mediaBox.getHeight());
+                summary.put("rotation", firstPage.getRotation());
+            }
+            PDDocumentInformation information = pdf.getDocumentInformation();
+            putIfPresent(summary, "title", information.getTitle());
+            putIfPresent(summary, "author", information.getAuthor());
+            putIfPresent(summary, "subject", information.getSubject());
+            putIfPresent(summary, "creator", information.getCreator());
+            putIfPresent(summary, "producer", information.getProducer());
+            summary.put("encrypted", pdf.isEncrypted());
+        } catch (IOException | RuntimeException e) {
+            // Malformed or password protected; the bytes were already read, so this is not a storage error
+            LOG.debug("Could not parse PDF for preview", e);
+            return Optional.empty();
+        }
+        return Optional.of(new Preview(objectMapper.writeValueAsBytes(summary), "application/json"));
+    }
+
+    private Optional<Preview> thumbnail(InputStream content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxImagePixels) {
+                    return Optional.empty();
+                }
+                // Subsampling while decoding, so a large photo is never held in memory at full resolution
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (imageSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return Optional.of(encode(scale(reader.read(0, param))));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IIOException | RuntimeException e) {
+            // Corrupt or unsupported image data, retrying would not help
+            LOG.debug("Could not decode image for preview", e);
+            return Optional.empty();
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        double ratio = Math.min(1.0, (double) imageSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    // JPEG is far smaller for photos, PNG keeps transparency
+    private Preview encode(BufferedImage image) throws IOException {
+        boolean alpha = image.getColorModel().hasAlpha();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, alpha ? "png" : "jpeg", out);
+        return new Preview(out.toByteArray(), alpha ? "image/png" : "image/jpeg");
+    }
+
+    private static void putIfPresent(Map<String, Object> summary, String key, String value) {
+        if (value != null && !value.isBlank()) {
+            summary.put(key, value);
+        }
+    }
+
+    // Length without a trailing multi-byte character that the size limit cut in half
+    private static int utf8Boundary(byte[] bytes) {
+        int start = bytes.length - 1;
+        int continuation = 0;
+        while (start >= 0 && continuation < 3 && (bytes[start] & 0xc0) == 0x80) {
+            start--;
+            continuation++;
+        }
+        if (start < 0) {
+            return bytes.length;
+        }
+        int lead = bytes[start] & 0xff;
+        int expected = lead >= 0xf0 ? 4 : lead >= 0xe0 ? 3 : lead >= 0xc0 ? 2 : 1;
+        return continuation + 1 < expected ? start : bytes.length;
+    }
+}
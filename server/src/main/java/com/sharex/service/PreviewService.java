@@ -0,0 +1,72 @@
+package com.sharex.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+// Serves the previews the processing pipeline stored. They are a few KB each, so the popular ones are kept in
+// memory and a preview request costs neither a blob read nor a read of the file itself.
+@Service
+public class PreviewService {
+
+    // Storage keys are never reused, so an entry cannot go stale, only unused
+    private final Cache<String, byte[]> cache;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private UploadProcessingPipeline uploadProcessingPipeline;
+
+    public PreviewService(@Value("${sharex.preview.cache.max-size:32MB}") DataSize maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String storageKey, byte[] content) -> content.length)
+                .recordStats()
+                .build();
+    }
+
+    // Empty when the file has no preview
+    public Optional<Preview> getPreview(FileData fileData) throws IOException {
+        String storageKey = fileData.getPreviewKey();
+        if (storageKey == null) {
+            return Optional.empty();
+        }
+
+        // Loaded outside the cache so the blob read never runs inside a map compute
+        byte[] content = cache.getIfPresent(storageKey);
+        if (content == null) {
+            try (InputStream in = contentService.open(storageKey, fileData.getPreviewEncoding())) {
+                content = in.readAllBytes();
+            }
+            cache.put(storageKey, content);
+        }
+        return Optional.of(new Preview(content, fileData.getPreviewType()));
+    }
+
+    // True while a file without a preview may still get one; files from before the pipeline are started here
+    public boolean isPreviewPending(FileData fileData) {
+        if (fileData.getProcessingStatus() == null) {
+            return uploadProcessingPipeline.startProcessing(fileData.getFileId());
+        }
+        return fileData.getProcessingStatus() == ProcessingStatus.PENDING;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,173 @@
+package com.sharex.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Local copy of the user attributes of recently seen sessions, so authenticated calls skip the SPRING_SESSION read
+@Component
+public class SessionNearCache {
+
+    private static final String VERSION_SQL = "SELECT LAST_ACCESS_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?";
+    private static final String TOUCH_SQL = "UPDATE SPRING_SESSION SET LAST_ACCESS_TIME = ?, "
+            + "EXPIRY_TIME = ? + MAX_INACTIVE_INTERVAL * 1000 WHERE SESSION_ID = ? AND LAST_ACCESS_TIME < ?";
+
+    private final Cache<String, CachedSession> sessions;
+    private final long validationIntervalMs;
+    private final Map<String, Long> pendingTouches = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public SessionNearCache(@Value("${sharex.session.near-cache.maximum-size:100000}") long maximumSize,
+                            @Value("${sharex.session.near-cache.ttl:10s}") Duration ttl,
+                            @Value("${spring.session.timeout:30m}") Duration sessionTimeout) {
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(sessionTimeout)
+                .build();
+        this.validationIntervalMs = ttl.toMillis();
+    }
+
+    // Returns null when the session is unknown here or no longer valid; the caller then loads it from the store
+    public CachedSession get(String sessionId) {
+        CachedSession cached = sessions.getIfPresent(sessionId);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - cached.lastAccessedAt > cached.maxInactiveMs) {
+            // Another node may have kept it alive, let the session repository decide
+            evict(sessionId);
+            misses.increment();
+            return null;
+        }
+        if (now - cached.validatedAt >= validationIntervalMs) {
+            // Cheap version check so a logout, expiry or attribute change on another node is seen within one
+            // interval: any write there moves LAST_ACCESS_TIME away from the last value this node knows of
+            validations.increment();
+            List<Long> versions = jdbcTemplate.queryForList(VERSION_SQL, Long.class, sessionId);
+            if (versions.isEmpty() || versions.get(0) != cached.version) {
+                evict(sessionId);
+                misses.increment();
+                return null;
+            }
+            cached.validatedAt = now;
+        }
+
+        cached.lastAccessedAt = now;
+        pendingTouches.put(sessionId, now);
+        hits.increment();
+        return cached;
+    }
+
+    // lastAccessedTime is the session's LAST_ACCESS_TIME as the repository will store it
+    public void put(String sessionId, String userId, String username, int maxInactiveIntervalSeconds,
+                    long lastAccessedTime) {
+        sessions.put(sessionId, new CachedSession(userId, username, maxInactiveIntervalSeconds * 1000L,
+                lastAccessedTime));
+    }
+
+    public void evict(String sessionId) {
+        sessions.invalidate(sessionId);
+        pendingTouches.remove(sessionId);
+    }
+
+    // Requests served from the cache never reach the session repository, so their access times are written here
+    @Scheduled(fixedDelayString = "${sharex.session.near-cache.touch-flush-interval-ms:10000}")
+    public void flushTouches() {
+        if (pendingTouches.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        Map<String, Long> flushed = new HashMap<>();
+        for (String sessionId : new ArrayList<>(pendingTouches.keySet())) {
+            Long touchedAt = pendingTouches.remove(sessionId);
+            if (touchedAt != null) {
+                batch.add(new Object[] {touchedAt, touchedAt, sessionId, touchedAt});
+                flushed.put(sessionId, touchedAt);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(TOUCH_SQL, batch);
+
+        // Our own touches are expected versions; if another node wrote a later one, the next check evicts
+        flushed.forEach((sessionId, touchedAt) -> {
+            CachedSession cached = sessions.getIfPresent(sessionId);
+            if (cached != null && touchedAt > cached.version) {
+                cached.version = touchedAt;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTouches();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getValidationCount() {
+        return validations.sum();
+    }
+
+    public long getSize() {
+        return sessions.estimatedSize();
+    }
+
+    public static final class CachedSession {
+
+        private final String userId;
+        private final String username;
+        private final long maxInactiveMs;
+        private volatile long lastAccessedAt;
+        private volatile long validatedAt;
+        // LAST_ACCESS_TIME the store should hold: the loaded value, or the latest touch this node flushed
+        private volatile long version;
+
+        private CachedSession(String userId, String username, long maxInactiveMs, long version) {
+            this.userId = userId;
+            this.username = username;
+            this.maxInactiveMs = maxInactiveMs;
+            this.lastAccessedAt = System.currentTimeMillis();
+            this.validatedAt = this.lastAccessedAt;
+            this.version = version;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+}
@@ -1,24 +1,72 @@
 package com.sharex.service;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.session.web.http.HttpSessionIdResolver;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
 
 @Service
 public class SessionService {
 
+    public static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+
     private static final String USER_ID_ATTRIBUTE = "userId";
     private static final String USERNAME_ATTRIBUTE = "username";
+    private static final String TOKEN_MODE = "token";
+
+    @Autowired
+    private HttpSessionIdResolver sessionIdResolver;
+
+    @Autowired
+    private SessionNearCache sessionNearCache;
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    @Value("${sharex.auth.mode:session}")
+    private String authMode;
+
+    @Value("${sharex.auth.token.cookie-secure:false}")
+    private boolean tokenCookieSecure;
 
     public void createUserSession(HttpServletRequest request, String userId, String username) {
+        if (isTokenMode()) {
+            String token = authTokenService.issue(userId, username);
+            authTokenService.verify(token).ifPresent(verified ->
+                    request.setAttribute(AuthTokenService.TOKEN_ATTRIBUTE, verified));
+            writeTokenCookie(token, authTokenService.getTtl());
+            return;
+        }
+
         HttpSession session = request.getSession(true);
         session.setAttribute(USER_ID_ATTRIBUTE, userId);
         session.setAttribute(USERNAME_ATTRIBUTE, username);
         session.setMaxInactiveInterval(30 * 60);
+        sessionNearCache.put(session.getId(), userId, username, session.getMaxInactiveInterval(),
+                session.getLastAccessedTime());
     }
 
     public String getCurrentUserId(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
+        if (isTokenMode()) {
+            AuthToken token = currentToken(request);
+            return token != null ? token.getUserId() : null;
+        }
+
+        SessionNearCache.CachedSession cached = findCachedSession(request);
+        if (cached != null) {
+            return cached.getUserId();
+        }
+
+        HttpSession session = loadSession(request);
         if (session != null) {
             return (String) session.getAttribute(USER_ID_ATTRIBUTE);
         }
@@ -26,7 +74,17 @@ public class SessionService {
     }
 
     public String getCurrentUsername(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
+        if (isTokenMode()) {
+            AuthToken token = currentToken(request);
+            return token != null ? token.getUsername() : null;
+        }
+
+        SessionNearCache.CachedSession cached = findCachedSession(request);
+        if (cached != null) {
+            return cached.getUsername();
+        }
+
+        HttpSession session = loadSession(request);
         if (session != null) {
             return (String) session.getAttribute(USERNAME_ATTRIBUTE);
         }
@@ -38,9 +96,75 @@ public class SessionService {
     }
 
     public void invalidateSession(HttpServletRequest request) {
+        if (isTokenMode()) {
+            AuthToken token = currentToken(request);
+            if (token != null) {
+                authTokenService.revoke(token);
+                request.removeAttribute(AuthTokenService.TOKEN_ATTRIBUTE);
+            }
+            writeTokenCookie("", Duration.ZERO);
+            return;
+        }
+
+        for (String sessionId : sessionIdResolver.resolveSessionIds(request)) {
+            sessionNearCache.evict(sessionId);
+        }
         HttpSession session = request.getSession(false);
         if (session != null) {
             session.invalidate();
         }
     }
+
+    private boolean isTokenMode() {
+        return TOKEN_MODE.equalsIgnoreCase(authMode);
+    }
+
+    // Set by TokenAuthenticationFilter once the signature, expiry and revocation checks passed
+    private AuthToken currentToken(HttpServletRequest request) {
+        Object token = request.getAttribute(AuthTokenService.TOKEN_ATTRIBUTE);
+        return token instanceof AuthToken authToken ? authToken : null;
+    }
+
+    private void writeTokenCookie(String token, Duration maxAge) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null) {
+            return;
+        }
+        HttpServletResponse response = attributes.getResponse();
+        ResponseCookie cookie = ResponseCookie.from(AuthTokenService.TOKEN_COOKIE, token)
+                .httpOnly(true)
+                .secure(tokenCookieSecure)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        if (!token.isEmpty()) {
+            // For clients that send the token as a bearer header instead of the cookie
+            response.setHeader(AUTH_TOKEN_HEADER, token);
+        }
+    }
+
+    // Looks at the session cookie only, request.getSession() would read the session from the database
+    private SessionNearCache.CachedSession findCachedSession(HttpServletRequest request) {
+        for (String sessionId : sessionIdResolver.resolveSessionIds(request)) {
+            SessionNearCache.CachedSession cached = sessionNearCache.get(sessionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    private HttpSession loadSession(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            String userId = (String) session.getAttribute(USER_ID_ATTRIBUTE);
+            if (userId != null) {
+                sessionNearCache.put(session.getId(), userId, (String) session.getAttribute(USERNAME_ATTRIBUTE),
+                        session.getMaxInactiveInterval(), session.getLastAccessedTime());
+            }
+        }
+        return session;
+    }
 } 
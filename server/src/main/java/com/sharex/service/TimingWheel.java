@@ -0,0 +1,124 @@
+package com.sharex.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hierarchical timing wheel: each level has the same number of slots, a slot on level n spans slots^n ticks.
+// Entries on higher levels cascade down as the wheel turns, so scheduling and expiring are O(1) per entry.
+class TimingWheel {
+
+    private final long tickMs;
+    private final int slots;
+    private final List<List<Map<String, Long>>> levels = new ArrayList<>();
+    private final Map<String, Long> scheduled = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentTick;
+
+    TimingWheel(long tickMs, int slots, int levelCount, long startMs) {
+        this.tickMs = tickMs;
+        this.slots = slots;
+        for (int level = 0; level < levelCount; level++) {
+            List<Map<String, Long>> wheel = new ArrayList<>(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                wheel.add(new HashMap<>());
+            }
+            levels.add(wheel);
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    // Latest deadline the wheel can hold right now; later ones are left for a future scan
+    long horizonMs() {
+        lock.lock();
+        try {
+            return (currentTick + span(levels.size()) - 1) * tickMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns false if the deadline lies beyond the horizon
+    boolean schedule(String id, long deadlineMs) {
+        lock.lock();
+        try {
+            if (scheduled.containsKey(id)) {
+                return true;
+            }
+            long deadlineTick = Math.max(deadlineMs / tickMs, currentTick + 1);
+            if (!place(id, deadlineTick)) {
+                return false;
+            }
+            scheduled.put(id, deadlineMs);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Turns the wheel up to now and returns the ids whose deadline has passed
+    List<String> advance(long nowMs) {
+        List<String> due = new ArrayList<>();
+        lock.lock();
+        try {
+            long targetTick = nowMs / tickMs;
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                Map<String, Long> slot = levels.get(0).get((int) (currentTick % slots));
+                for (String id : slot.keySet()) {
+                    scheduled.remove(id);
+                    due.add(id);
+                }
+                slot.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return due;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return scheduled.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cascade() {
+        for (int level = 1; level < levels.size(); level++) {
+            long levelSpan = span(level);
+            if (currentTick % levelSpan != 0) {
+                return;
+            }
+            Map<String, Long> slot = levels.get(level).get((int) ((currentTick / levelSpan) % slots));
+            Map<String, Long> entries = new HashMap<>(slot);
+            slot.clear();
+            entries.forEach(this::place);
+        }
+    }
+
+    private boolean place(String id, long deadlineTick) {
+        long delta = deadlineTick - currentTick;
+        for (int level = 0; level < levels.size(); level++) {
+            if (delta < span(level + 1)) {
+                long levelSpan = span(level);
+                levels.get(level).get((int) ((deadlineTick / levelSpan) % slots)).put(id, deadlineTick);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span *= slots;
+        }
+        return span;
+    }
+}
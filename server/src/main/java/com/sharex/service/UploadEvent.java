@@ -0,0 +1,43 @@
+package com.sharex.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.sharex.Upload")
+@Label("File Upload")
+@Category({"ShareX", "Upload"})
+@Description("Storing one uploaded file, split into password hashing, content storage and the metadata insert")
+@StackTrace(false)
+class UploadEvent extends Event {
+
+    @Label("File Id")
+    String fileId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Stored Size")
+    @Description("Size after compression, equal to the size for content stored as is")
+    @DataAmount
+    long storedBytes;
+
+    @Label("Hash Time")
+    @Timespan
+    long hashDuration;
+
+    @Label("Store Time")
+    @Description("Digest, optional compression and the blob store write")
+    @Timespan
+    long storeDuration;
+
+    @Label("Persist Time")
+    @Timespan
+    long persistDuration;
+}
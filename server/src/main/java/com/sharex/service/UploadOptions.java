@@ -0,0 +1,61 @@
+package com.sharex.service;
+
+import java.time.LocalDateTime;
+
+// Owner and sharing limits of a file being stored
+public class UploadOptions {
+
+    private String userId;
+
+    // Already hashed, storing never runs BCrypt
+    private String passwordHash;
+
+    private Integer downloadLimit;
+
+    private LocalDateTime expiryDate;
+
+    // Null leaves the choice to the server default
+    private Boolean compress;
+
+    public UploadOptions() { }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    public Integer getDownloadLimit() {
+        return downloadLimit;
+    }
+
+    public void setDownloadLimit(Integer downloadLimit) {
+        this.downloadLimit = downloadLimit;
+    }
+
+    public LocalDateTime getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(LocalDateTime expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    public Boolean getCompress() {
+        return compress;
+    }
+
+    public void setCompress(Boolean compress) {
+        this.compress = compress;
+    }
+}
@@ -0,0 +1,359 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStage;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
+import com.sharex.repository.FileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Work derived from an upload runs here after the upload has returned: checksum verification, virus scan, MIME
+// sniffing and preview generation. Each stage has its own small pool and bounded queue. Progress lives in the
+// database, so a full queue or a failed attempt only leaves the file pending with a next attempt time and the
+// sweeper resubmits it once due; nothing waits in memory and a restart loses nothing.
+@Service
+public class UploadProcessingPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadProcessingPipeline.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final int MAX_BACKOFF_DOUBLINGS = 6;
+
+    private final Map<ProcessingStage, ThreadPoolExecutor> executors = new EnumMap<>(ProcessingStage.class);
+    private final Map<ProcessingStage, LongAdder> completed = new EnumMap<>(ProcessingStage.class);
+    private final Map<ProcessingStage, LongAdder> failed = new EnumMap<>(ProcessingStage.class);
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final LongAdder deferred = new LongAdder();
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private ContentService contentService;
+
+    @Autowired
+    private PreviewGenerator previewGenerator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired(required = false)
+    private VirusScanner virusScanner;
+
+    @Value("${sharex.processing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sharex.processing.threads:2}")
+    private int threads;
+
+    @Value("${sharex.processing.queue-capacity:100}")
+    private int queueCapacity;
+
+    // A stage that failed this many times leaves the file FAILED
+    @Value("${sharex.processing.max-attempts:5}")
+    private int maxAttempts;
+
+    // Delay before the first retry, doubled for every further one
+    @Value("${sharex.processing.retry-backoff:10s}")
+    private Duration retryBackoff;
+
+    @Value("${sharex.processing.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    @PostConstruct
+    public void start() {
+        for (ProcessingStage stage : ProcessingStage.values()) {
+            String prefix = "processing-" + stage.name().toLowerCase().replace('_', '-') + "-";
+            AtomicInteger sequence = new AtomicInteger();
+            executors.put(stage, new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy()));
+            completed.put(stage, new LongAdder());
+            failed.put(stage, new LongAdder());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    // After commit, so the stage threads can see the row
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileUploaded(FileUploadedEvent event) {
+        if (enabled) {
+            submit(event.getFileId(), ProcessingStage.values()[0]);
+        }
+    }
+
+    // For files uploaded before the pipeline existed, which are processed when something first asks for a result.
+    // Returns false if processing is disabled and the result will never come.
+    public boolean startProcessing(String fileId) {
+        if (!enabled) {
+            return false;
+        }
+        ProcessingStage first = ProcessingStage.values()[0];
+        Integer started = transactionTemplate.execute(transaction -> fileRepository.startProcessing(fileId, first,
+                ProcessingStatus.PENDING, LocalDateTime.now()));
+        if (started != null && started > 0) {
+            eventPublisher.publishEvent(new FileChangedEvent(fileId));
+            submit(fileId, first);
+        }
+        return true;
+    }
+
+    // Picks up files whose submission was turned away, retries that are due and work lost to a restart
+    @Scheduled(fixedDelayString = "${sharex.processing.sweep-interval-ms:30000}",
+               initialDelayString = "${sharex.processing.sweep-initial-delay-ms:10000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        for (FileData fileData : fileRepository.findProcessingDue(ProcessingStatus.PENDING, LocalDateTime.now(),
+                PageRequest.of(0, sweepBatchSize))) {
+            submit(fileData.getFileId(), fileData.getProcessingStage());
+        }
+    }
+
+    public int getQueueDepth(ProcessingStage stage) {
+        return executors.get(stage).getQueue().size();
+    }
+
+    public long getCompletedCount(ProcessingStage stage) {
+        return completed.get(stage).sum();
+    }
+
+    public long getFailedCount(ProcessingStage stage) {
+        return failed.get(stage).sum();
+    }
+
+    // Submissions a full queue turned away, left for the sweeper
+    public long getDeferredCount() {
+        return deferred.sum();
+    }
+
+    private void submit(String fileId, ProcessingStage stage) {
+        if (stage == null || !inFlight.add(fileId)) {
+            return;
+        }
+        try {
+            executors.get(stage).execute(() -> run(fileId, stage));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(fileId);
+            deferred.increment();
+        }
+    }
+
+    private void run(String fileId, ProcessingStage stage) {
+        ProcessingStage next = null;
+        try {
+            next = process(fileId, stage);
+        } catch (RuntimeException e) {
+            // Not even the failure could be recorded; the file is still due and the sweeper will retry it
+            LOG.warn("Could not process {} for file {}", stage, fileId, e);
+        } finally {
+            inFlight.remove(fileId);
+        }
+        submit(fileId, next);
+    }
+
+    // Runs one stage and returns the stage to submit next, null when there is nothing to run now
+    ProcessingStage process(String fileId, ProcessingStage stage) {
+        FileData fileData = fileRepository.findById(fileId).orElse(null);
+        if (fileData == null || fileData.getProcessingStatus() != ProcessingStatus.PENDING
+                || fileData.getProcessingStage() != stage) {
+            // Deleted meanwhile, or the stage was already finished elsewhere
+            return null;
+        }
+
+        try {
+            switch (stage) {
+                case CHECKSUM:
+                    return verifyChecksum(fileData);
+                case VIRUS_SCAN:
+                    return scan(fileData);
+                case MIME_TYPE:
+                    return detectMimeType(fileData);
+                case PREVIEW:
+                    return generatePreview(fileData);
+                default:
+                    throw new IllegalArgumentException("Unsupported stage " + stage);
+            }
+        } catch (IOException | RuntimeException e) {
+            recordFailure(fileData, stage, e);
+            return null;
+        }
+    }
+
+    // The upload already hashed the bytes on their way in; this checks that what reached the disk still matches
+    private ProcessingStage verifyChecksum(FileData fileData) throws IOException {
+        Boolean verified = null;
+        if (fileData.getContentDigest() != null) {
+            MessageDigest sha256 = newSha256();
+            try (InputStream in = new DigestInputStream(open(fileData), sha256)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            verified = HexFormat.of().formatHex(sha256.digest()).equals(fileData.getContentDigest());
+            if (!verified) {
+                LOG.error("Stored content of file {} does not match its digest", fileData.getFileId());
+            }
+        }
+        Boolean result = verified;
+        return advance(fileData, ProcessingStage.CHECKSUM, ProcessingStage.CHECKSUM.next(),
+                () -> fileRepository.setChecksumVerified(fileData.getFileId(), result));
+    }
+
+    private ProcessingStage scan(FileData fileData) throws IOException {
+        ScanResult result = ScanResult.NOT_SCANNED;
+        if (virusScanner != null) {
+            try (InputStream in = open(fileData)) {
+                result = virusScanner.scan(in, fileData.getOriginalFileName());
+            }
+        }
+        // Infected content is never parsed for its type or a preview
+        ProcessingStage next = result == ScanResult.INFECTED ? null : ProcessingStage.VIRUS_SCAN.next();
+        if (result == ScanResult.INFECTED) {
+            LOG.warn("File {} is infected, downloads are blocked", fileData.getFileId());
+        }
+        ScanResult scanResult = result;
+        return advance(fileData, ProcessingStage.VIRUS_SCAN, next,
+                () -> fileRepository.setScanResult(fileData.getFileId(), scanResult));
+    }
+
+    private ProcessingStage detectMimeType(FileData fileData) throws IOException {
+        byte[] head;
+        try (InputStream in = open(fileData)) {
+            head = in.readNBytes(MimeTypeDetector.SNIFF_LENGTH);
+        }
+        String mimeType = MimeTypeDetector.detect(head, fileData.getOriginalFileName());
+        return advance(fileData, ProcessingStage.MIME_TYPE, ProcessingStage.MIME_TYPE.next(),
+                () -> fileRepository.setMimeType(fileData.getFileId(), mimeType));
+    }
+
+    private ProcessingStage generatePreview(FileData fileData) throws IOException {
+        ProcessingStage next = ProcessingStage.PREVIEW.next();
+        Optional<Preview> preview = Optional.empty();
+        if (previewGenerator.supports(fileData.getMimeType())) {
+            try (InputStream in = open(fileData)) {
+                preview = previewGenerator.generate(fileData.getMimeType(), in);
+            }
+        }
+        if (preview.isEmpty()) {
+            return advance(fileData, ProcessingStage.PREVIEW, next, () -> { });
+        }
+
+        // Stored like any other content, so identical previews share a blob. That blob may be compressed even
+        // though the preview is stored uncompressed, when it is the file's own content, so its encoding is kept too.
+        String contentType = preview.get().getContentType();
+        ContentBlob stored = contentService.store(new ByteArrayInputStream(preview.get().getContent()));
+        boolean kept = false;
+        try {
+            kept = tryAdvance(fileData, ProcessingStage.PREVIEW, next, () -> fileRepository.setPreview(
+                    fileData.getFileId(), stored.getDigest(), stored.getStorageKey(), contentType,
+                    stored.getEncoding()));
+        } finally {
+            if (!kept) {
+                contentService.release(stored.getDigest(), stored.getStorageKey());
+            }
+        }
+        return kept ? next : null;
+    }
+
+    // Returns the stage to run next, null when there is none or the file was deleted or moved on meanwhile
+    private ProcessingStage advance(FileData fileData, ProcessingStage stage, ProcessingStage next,
+                                    Runnable storeResult) {
+        return tryAdvance(fileData, stage, next, storeResult) ? next : null;
+    }
+
+    // Stores the stage's result and moves the file on in one transaction
+    private boolean tryAdvance(FileData fileData, ProcessingStage stage, ProcessingStage next, Runnable storeResult) {
+        ProcessingStatus status = next != null ? ProcessingStatus.PENDING : ProcessingStatus.COMPLETE;
+        LocalDateTime nextAttemptAt = next != null ? LocalDateTime.now() : null;
+        Boolean advanced = transactionTemplate.execute(transaction -> {
+            if (fileRepository.advanceProcessing(fileData.getFileId(), stage, next, status, nextAttemptAt) == 0) {
+                return false;
+            }
+            storeResult.run();
+            return true;
+        });
+        if (!Boolean.TRUE.equals(advanced)) {
+            return false;
+        }
+
+        completed.get(stage).increment();
+        eventPublisher.publishEvent(new FileChangedEvent(fileData.getFileId()));
+        return true;
+    }
+
+    private void recordFailure(FileData fileData, ProcessingStage stage, Exception e) {
+        failed.get(stage).increment();
+        int attempts = (fileData.getProcessingAttempts() != null ? fileData.getProcessingAttempts() : 0) + 1;
+        boolean givingUp = attempts >= maxAttempts;
+        LocalDateTime nextAttemptAt = givingUp ? null
+                : LocalDateTime.now().plus(retryBackoff.multipliedBy(1L << Math.min(attempts - 1,
+                        MAX_BACKOFF_DOUBLINGS)));
+        String error = e.toString();
+        String truncated = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+
+        transactionTemplate.execute(transaction -> fileRepository.recordProcessingFailure(fileData.getFileId(), stage,
+                givingUp ? ProcessingStatus.FAILED : ProcessingStatus.PENDING, nextAttemptAt, truncated));
+        if (givingUp) {
+            LOG.warn("Giving up on {} for file {} after {} attempts", stage, fileData.getFileId(), attempts, e);
+            eventPublisher.publishEvent(new FileChangedEvent(fileData.getFileId()));
+        } else {
+            LOG.debug("{} failed for file {}, attempt {}", stage, fileData.getFileId(), attempts, e);
+        }
+    }
+
+    private InputStream open(FileData fileData) throws IOException {
+        return contentService.open(fileData.getStorageKey(), fileData.getContentEncoding());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
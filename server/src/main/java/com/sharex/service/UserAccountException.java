@@ -0,0 +1,9 @@
+package com.sharex.service;
+
+// A registration or login the user can correct, answered with 400 and the message
+public class UserAccountException extends RuntimeException {
+
+    public UserAccountException(String message) {
+        super(message);
+    }
+}
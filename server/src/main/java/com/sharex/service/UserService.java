@@ -5,7 +5,6 @@ import com.sharex.dto.RegisterRequest;
 import com.sharex.model.UserData;
 import com.sharex.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -17,19 +16,20 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHashingService passwordHashingService;
 
     public UserData register(RegisterRequest request) {
         if (userRepository.findByUsername(request.getUsername()).isPresent()) {
-            throw new RuntimeException("Username already exists");
+            throw new UserAccountException("Username already exists");
         }
 
         if (userRepository.findByEmail(request.getEmail()).isPresent()) {
-            throw new RuntimeException("Email already exists");
+            throw new UserAccountException("Email already exists");
         }
 
         String userId = UUID.randomUUID().toString();
-        String hashedPassword = passwordEncoder.encode(request.getPassword());
+        String hashedPassword = passwordHashingService.encode(request.getPassword());
 
         UserData user = new UserData(userId, request.getUsername(), request.getEmail(), hashedPassword);
         return userRepository.save(user);
@@ -39,13 +39,13 @@ public class UserService {
         Optional<UserData> userOpt = userRepository.findByUsername(request.getUsername());
         
         if (userOpt.isEmpty()) {
-            throw new RuntimeException("Invalid username or password");
+            throw new UserAccountException("Invalid username or password");
         }
 
         UserData user = userOpt.get();
         
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
-            throw new RuntimeException("Invalid username or password");
+        if (!passwordHashingService.matches(request.getPassword(), user.getPasswordHash())) {
+            throw new UserAccountException("Invalid username or password");
         }
 
         return user;
@@ -0,0 +1,13 @@
+package com.sharex.service;
+
+import com.sharex.model.ScanResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Hook for a scanner such as a clamd client; without a bean implementing it files are recorded as NOT_SCANNED.
+// IOExceptions are retried like any other failed stage.
+public interface VirusScanner {
+
+    ScanResult scan(InputStream content, String fileName) throws IOException;
+}
@@ -0,0 +1,28 @@
+package com.sharex.storage;
+
+import java.nio.file.Path;
+
+public class BlobLocation {
+
+    private final Path path;
+    private final long offset;
+    private final long length;
+
+    public BlobLocation(Path path, long offset, long length) {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
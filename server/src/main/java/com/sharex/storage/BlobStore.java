@@ -0,0 +1,17 @@
+package com.sharex.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+public interface BlobStore {
+
+    StoredBlob write(InputStream content) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    // Resolves the blob to a byte range of a local file so it can be served without copying through the heap
+    Optional<BlobLocation> locate(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,95 @@
+package com.sharex.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+@Component
+@ConditionalOnProperty(name = "sharex.storage.backend", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final String INCOMING_DIRECTORY = ".incoming";
+
+    private final Path root;
+    private final int chunkSize;
+
+    public FileSystemBlobStore(@Value("${sharex.storage.filesystem.root:./data/blobs}") String root,
+                               @Value("${sharex.storage.chunk-size:64KB}") DataSize chunkSize) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.chunkSize = (int) chunkSize.toBytes();
+        Files.createDirectories(this.root.resolve(INCOMING_DIRECTORY));
+    }
+
+    @Override
+    public StoredBlob write(InputStream content) throws IOException {
+        String key = UUID.randomUUID().toString();
+        Path incoming = Files.createTempFile(root.resolve(INCOMING_DIRECTORY), key, ".part");
+        long size = 0;
+
+        try {
+            try (FileChannel channel = FileChannel.open(incoming, StandardOpenOption.WRITE);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                // Fixed-size buffer keeps heap usage per upload constant regardless of the file size
+                byte[] buffer = new byte[chunkSize];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+                channel.force(true);
+            }
+
+            Path target = resolve(key);
+            Files.createDirectories(target.getParent());
+            Files.move(incoming, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(incoming);
+            throw e;
+        }
+
+        return new StoredBlob(key, size);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public Optional<BlobLocation> locate(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(new BlobLocation(path.toRealPath(), 0, Files.size(path)));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
@@ -0,0 +1,617 @@
+package com.sharex.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+// Appends blobs to large segment files and keeps an in-memory index of where each one lives. Deletes append a
+// tombstone; segments whose dead share passes the threshold are rewritten by the compactor and then removed.
+@Component
+@ConditionalOnProperty(name = "sharex.storage.backend", havingValue = "segment")
+public class SegmentBlobStore implements BlobStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentBlobStore.class);
+
+    private static final Pattern KEY_PATTERN =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment-(\\d{16})\\.log");
+    private static final String INCOMING_DIRECTORY = ".incoming";
+
+    private static final int MAGIC = 0x53584231;
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final int KEY_LENGTH = 36;
+    // magic, type, key, payload length, CRC32C of the payload
+    static final int HEADER_SIZE = 4 + 1 + KEY_LENGTH + 8 + 4;
+
+    private final Path root;
+    private final long segmentSize;
+    private final long spoolThreshold;
+    private final int chunkSize;
+    private final double compactionThreshold;
+    private final long retireDelayMs;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // Deleted keys mapped to the oldest segment that may still hold their data
+    private final Map<String, Long> tombstones = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Compacted segments are unlinked later so readers that already located a blob in them can still open it
+    private final NavigableMap<Long, Long> retired = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile Segment active;
+    private FileChannel activeChannel;
+
+    private final LongAdder compactedSegments = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    public SegmentBlobStore(@Value("${sharex.storage.segment.root:./data/segments}") String root,
+                            @Value("${sharex.storage.segment.segment-size:1GB}") DataSize segmentSize,
+                            @Value("${sharex.storage.segment.spool-threshold:1MB}") DataSize spoolThreshold,
+                            @Value("${sharex.storage.chunk-size:64KB}") DataSize chunkSize,
+                            @Value("${sharex.storage.segment.compaction-threshold:0.5}") double compactionThreshold,
+                            @Value("${sharex.storage.segment.retire-delay:5m}") Duration retireDelay)
+            throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.segmentSize = segmentSize.toBytes();
+        this.spoolThreshold = spoolThreshold.toBytes();
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.compactionThreshold = compactionThreshold;
+        this.retireDelayMs = retireDelay.toMillis();
+        Files.createDirectories(this.root.resolve(INCOMING_DIRECTORY));
+        recover();
+    }
+
+    @Override
+    public StoredBlob write(InputStream content) throws IOException {
+        String key = UUID.randomUUID().toString();
+        CRC32C crc = new CRC32C();
+        // Small blobs are buffered in memory, larger ones spooled to disk, so the append lock is only held
+        // for one sequential copy and never while waiting on the client
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        Path spool = null;
+        OutputStream spoolOut = null;
+        long size = 0;
+
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                size += read;
+                if (spoolOut == null && size > spoolThreshold) {
+                    spool = Files.createTempFile(root.resolve(INCOMING_DIRECTORY), key, ".part");
+                    spoolOut = Files.newOutputStream(spool);
+                    memory.writeTo(spoolOut);
+                    memory = null;
+                }
+                if (spoolOut != null) {
+                    spoolOut.write(buffer, 0, read);
+                } else {
+                    memory.write(buffer, 0, read);
+                }
+            }
+            if (spoolOut != null) {
+                spoolOut.close();
+                spoolOut = null;
+            }
+
+            PayloadWriter payload;
+            if (spool != null) {
+                Path spooled = spool;
+                long length = size;
+                payload = (target) -> {
+                    try (FileChannel in = FileChannel.open(spooled, StandardOpenOption.READ)) {
+                        transferFully(in, 0, length, target);
+                    }
+                };
+            } else {
+                ByteBuffer bytes = ByteBuffer.wrap(memory.toByteArray());
+                payload = (target) -> writeFully(target, bytes);
+            }
+
+            appendLock.lock();
+            try {
+                index.put(key, append(TYPE_DATA, key, size, (int) crc.getValue(), payload));
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            if (spoolOut != null) {
+                spoolOut.close();
+            }
+            if (spool != null) {
+                Files.deleteIfExists(spool);
+            }
+        }
+
+        return new StoredBlob(key, size);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        Entry entry = index.get(validate(key));
+        if (entry == null) {
+            throw new NoSuchFileException(key);
+        }
+        FileChannel channel = FileChannel.open(segmentPath(entry.segmentId), StandardOpenOption.READ);
+        return new RegionInputStream(channel, entry.offset, entry.length);
+    }
+
+    @Override
+    public Optional<BlobLocation> locate(String key) {
+        Entry entry = index.get(validate(key));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new BlobLocation(segmentPath(entry.segmentId), entry.offset, entry.length));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        validate(key);
+        appendLock.lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return;
+            }
+            // Tombstone first, a failed append leaves the blob readable instead of resurrecting it on restart
+            append(TYPE_TOMBSTONE, key, 0, 0, (target) -> { });
+            index.remove(key);
+            tombstones.put(key, entry.oldestSegmentId);
+            markDead(entry.segmentId, HEADER_SIZE + entry.length);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sharex.storage.segment.compaction-interval-ms:60000}")
+    public void compact() {
+        deleteRetiredSegments();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.size == 0
+                    || segment.deadBytes.get() < segment.size * compactionThreshold) {
+                continue;
+            }
+            try {
+                compact(segment);
+            } catch (IOException e) {
+                LOG.warn("Compacting segment {} failed", segment.id, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (activeChannel != null) {
+                activeChannel.force(true);
+                activeChannel.close();
+                activeChannel = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getStoredBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.size).sum();
+    }
+
+    public long getDeadBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.deadBytes.get()).sum();
+    }
+
+    public long getCompactedSegmentCount() {
+        return compactedSegments.sum();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.sum();
+    }
+
+    private void compact(Segment segment) throws IOException {
+        try (FileChannel source = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position + HEADER_SIZE <= segment.size) {
+                Record record = readRecord(source, position, segment.size, false);
+                if (record == null) {
+                    break;
+                }
+                if (record.type == TYPE_DATA) {
+                    copyIfLive(segment, source, record);
+                } else if (isTombstoneNeeded(record.key, segment.id)) {
+                    appendLock.lock();
+                    try {
+                        append(TYPE_TOMBSTONE, record.key, 0, 0, (target) -> { });
+                    } finally {
+                        appendLock.unlock();
+                    }
+                } else {
+                    tombstones.remove(record.key);
+                }
+                position = record.payloadOffset + record.length;
+            }
+        }
+
+        segments.remove(segment.id);
+        retired.put(segment.id, System.currentTimeMillis() + retireDelayMs);
+        compactedSegments.increment();
+        reclaimedBytes.add(segment.deadBytes.get());
+        LOG.info("Compacted segment {}, {} dead bytes reclaimed", segment.id, segment.deadBytes.get());
+    }
+
+    private void copyIfLive(Segment segment, FileChannel source, Record record) throws IOException {
+        Entry entry = index.get(record.key);
+        if (entry == null || entry.segmentId != segment.id || entry.offset != record.payloadOffset) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            // A delete may have run since the check above
+            if (index.get(record.key) != entry) {
+                return;
+            }
+            Entry moved = append(TYPE_DATA, record.key, record.length, record.crc,
+                    (target) -> transferFully(source, record.payloadOffset, record.length, target));
+            index.put(record.key, new Entry(moved.segmentId, moved.offset, moved.length, entry.oldestSegmentId));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // A tombstone can be dropped once no segment older than it can still contain the deleted record
+    private boolean isTombstoneNeeded(String key, long segmentId) {
+        Long oldest = tombstones.get(key);
+        if (oldest == null || oldest >= segmentId) {
+            return false;
+        }
+        return !segments.subMap(oldest, true, segmentId, false).isEmpty()
+                || !retired.subMap(oldest, true, segmentId, false).isEmpty();
+    }
+
+    private void deleteRetiredSegments() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> entry : retired.entrySet()) {
+            if (entry.getValue() > now) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(entry.getKey()));
+                retired.remove(entry.getKey());
+            } catch (IOException e) {
+                LOG.warn("Could not delete retired segment {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    // Caller holds the append lock
+    private Entry append(byte type, String key, long length, int crc, PayloadWriter payload) throws IOException {
+        long recordSize = HEADER_SIZE + length;
+        if (active.size > 0 && active.size + recordSize > segmentSize) {
+            roll();
+        }
+
+        long start = active.size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put(type).put(key.getBytes(StandardCharsets.US_ASCII)).putLong(length).putInt(crc);
+        header.flip();
+
+        activeChannel.position(start);
+        writeFully(activeChannel, header);
+        payload.writeTo(activeChannel);
+        activeChannel.force(false);
+        active.size = start + recordSize;
+        return new Entry(active.id, start + HEADER_SIZE, length, active.id);
+    }
+
+    private void roll() throws IOException {
+        // Cut off anything a failed append left behind so the sealed segment ends on a record boundary
+        activeChannel.truncate(active.size);
+        activeChannel.force(true);
+        activeChannel.close();
+        openActive(new Segment(active.id + 1, segmentPath(active.id + 1)));
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        segments.put(segment.id, segment);
+        activeChannel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeChannel.truncate(segment.size);
+        active = segment;
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(root.resolve(INCOMING_DIRECTORY))) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        ids.sort(null);
+
+        for (int i = 0; i < ids.size(); i++) {
+            boolean last = i == ids.size() - 1;
+            Segment segment = new Segment(ids.get(i), segmentPath(ids.get(i)));
+            segments.put(segment.id, segment);
+            long fileSize = Files.size(segment.path);
+            // Sealed segments were forced before the next one was created, only the tail can hold a torn write
+            long end = scan(segment, fileSize, last);
+            if (end < fileSize) {
+                LOG.warn("Segment {} has {} unreadable trailing bytes", segment.id, fileSize - end);
+            }
+            if (last) {
+                segment.size = end;
+            } else {
+                segment.size = fileSize;
+                segment.deadBytes.addAndGet(fileSize - end);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openActive(new Segment(1, segmentPath(1)));
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            openActive(last);
+            if (last.size >= segmentSize) {
+                roll();
+            }
+        }
+        LOG.info("Opened {} segments holding {} blobs", segments.size(), index.size());
+    }
+
+    private long scan(Segment segment, long fileSize, boolean verify) throws IOException {
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            while (position + HEADER_SIZE <= fileSize) {
+                Record record = readRecord(channel, position, fileSize, verify);
+                if (record == null) {
+                    break;
+                }
+                if (record.type == TYPE_DATA) {
+                    Entry previous = index.get(record.key);
+                    long oldest = segment.id;
+                    if (previous != null) {
+                        // Left behind by a compaction that did not get to remove its source
+                        markDead(previous.segmentId, HEADER_SIZE + previous.length);
+                        oldest = previous.oldestSegmentId;
+                    }
+                    index.put(record.key, new Entry(segment.id, record.payloadOffset, record.length, oldest));
+                } else {
+                    Entry removed = index.remove(record.key);
+                    if (removed != null) {
+                        markDead(removed.segmentId, HEADER_SIZE + removed.length);
+                        tombstones.put(record.key, removed.oldestSegmentId);
+                    } else if (!tombstones.containsKey(record.key)) {
+                        segment.deadBytes.addAndGet(HEADER_SIZE);
+                    }
+                }
+                position = record.payloadOffset + record.length;
+            }
+        }
+        return position;
+    }
+
+    private Record readRecord(FileChannel channel, long position, long limit, boolean verify) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                return null;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            return null;
+        }
+        byte type = header.get();
+        byte[] key = new byte[KEY_LENGTH];
+        header.get(key);
+        long length = header.getLong();
+        int crc = header.getInt();
+
+        long payloadOffset = position + HEADER_SIZE;
+        if ((type != TYPE_DATA && type != TYPE_TOMBSTONE) || length < 0 || payloadOffset + length > limit) {
+            return null;
+        }
+        if (verify && type == TYPE_DATA && checksum(channel, payloadOffset, length) != crc) {
+            return null;
+        }
+        return new Record(type, new String(key, StandardCharsets.US_ASCII), payloadOffset, length, crc);
+    }
+
+    private int checksum(FileChannel channel, long position, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        long done = 0;
+        while (done < length) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length - done));
+            int read = channel.read(buffer, position + done);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            buffer.flip();
+            crc.update(buffer);
+            done += read;
+        }
+        return (int) crc.getValue();
+    }
+
+    private void markDead(long segmentId, long bytes) {
+        Segment segment = segments.get(segmentId);
+        if (segment != null) {
+            segment.deadBytes.addAndGet(bytes);
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return root.resolve(String.format("segment-%016d.log", id));
+    }
+
+    private String validate(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return key;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void transferFully(FileChannel source, long position, long length, FileChannel target)
+            throws IOException {
+        long done = 0;
+        while (done < length) {
+            long transferred = source.transferTo(position + done, length - done, target);
+            if (transferred <= 0) {
+                throw new EOFException("Source ended after " + done + " of " + length + " bytes");
+            }
+            done += transferred;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PayloadWriter {
+        void writeTo(FileChannel target) throws IOException;
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private volatile long size;
+        private final AtomicLong deadBytes = new AtomicLong();
+
+        private Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private static final class Entry {
+
+        private final long segmentId;
+        private final long offset;
+        private final long length;
+        private final long oldestSegmentId;
+
+        private Entry(long segmentId, long offset, long length, long oldestSegmentId) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.oldestSegmentId = oldestSegmentId;
+        }
+    }
+
+    private static final class Record {
+
+        private final byte type;
+        private final String key;
+        private final long payloadOffset;
+        private final long length;
+        private final int crc;
+
+        private Record(byte type, String key, long payloadOffset, long length, int crc) {
+            this.type = type;
+            this.key = key;
+            this.payloadOffset = payloadOffset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private static final class RegionInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        private RegionInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, remaining)), position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.sharex.storage;
+
+public class StoredBlob {
+
+    private final String key;
+    private final long size;
+
+    public StoredBlob(String key, long size) {
+        this.key = key;
+        this.size = size;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
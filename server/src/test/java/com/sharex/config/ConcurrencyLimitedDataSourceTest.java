@@ -0,0 +1,106 @@
+package com.sharex.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ConcurrencyLimitedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    private ConcurrencyLimitedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        lenient().when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new ConcurrencyLimitedDataSource(target, 2, 1, Duration.ofMillis(100), Duration.ofSeconds(3));
+    }
+
+    @Test
+    void getConnectionShouldTimeOutOnceAllPermitsAreHeld() throws SQLException {
+        // Given
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        // When
+        DatabaseOverloadedException e = assertThrows(DatabaseOverloadedException.class, dataSource::getConnection);
+
+        // Then
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, dataSource.getRejectedCount());
+        assertEquals(0, dataSource.getWaitingCount());
+    }
+
+    @Test
+    void closeShouldReleasePermitOnlyOnce() throws SQLException {
+        // Given
+        Connection connection = dataSource.getConnection();
+        dataSource.getConnection();
+
+        // When
+        connection.close();
+        connection.close();
+
+        // Then
+        assertEquals(1, dataSource.getActiveCount());
+        dataSource.getConnection();
+        assertThrows(DatabaseOverloadedException.class, dataSource::getConnection);
+    }
+
+    @Test
+    void getConnectionShouldRejectAtOnceWhenTooManyAreWaiting() throws Exception {
+        // Given
+        dataSource = new ConcurrencyLimitedDataSource(target, 1, 1, Duration.ofSeconds(5), Duration.ofSeconds(1));
+        Connection held = dataSource.getConnection();
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (dataSource.getWaitingCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // When
+        long startedAt = System.nanoTime();
+        assertThrows(DatabaseOverloadedException.class, dataSource::getConnection);
+
+        // Then
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1));
+        held.close();
+        waiter.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, dataSource.getActiveCount());
+    }
+
+    @Test
+    void getConnectionShouldReleasePermitWhenTargetFails() throws SQLException {
+        // Given
+        when(target.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        // When
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        // Then
+        assertEquals(0, dataSource.getActiveCount());
+    }
+}
@@ -0,0 +1,142 @@
+package com.sharex.controller;
+
+import com.sharex.model.FileData;
+import com.sharex.repository.FileRepository;
+import com.sharex.service.ByteRange;
+import com.sharex.service.ChunkedUploadService;
+import com.sharex.service.ContentService;
+import com.sharex.service.ContentTransferService;
+import com.sharex.service.DownloadCounterService;
+import com.sharex.service.DownloadGrantService;
+import com.sharex.service.DownloadReservationService;
+import com.sharex.service.FileMetadataCache;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingService;
+import com.sharex.service.PreviewService;
+import com.sharex.service.SessionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Runs the real access check, grant, reservation and counter services behind the download endpoint
+@WebMvcTest(FileController.class)
+@Import({
+    FileService.class, DownloadGrantService.class, DownloadReservationService.class, DownloadCounterService.class
+})
+public class FileControllerDownloadLimitTest {
+
+    private static final long SIZE = 100;
+    private static final String GRANT_HEADER = "X-Download-Grant";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FileRepository fileRepository;
+
+    @MockBean
+    private ContentService contentService;
+
+    @MockBean
+    private FileMetadataCache fileMetadataCache;
+
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private SessionService sessionService;
+
+    @MockBean
+    private ContentTransferService contentTransferService;
+
+    @MockBean
+    private ChunkedUploadService chunkedUploadService;
+
+    @MockBean
+    private PreviewService previewService;
+
+    @Test
+    @WithMockUser
+    public void segmentsWithCountedGrantShouldFinishDownloadThatUsedTheLastSlot() throws Exception {
+        // Given
+        limitedFile("segmented-id");
+        stubRanges(List.of(new ByteRange(0, 33)), List.of(new ByteRange(34, 66)), List.of(new ByteRange(67, 99)));
+
+        // When
+        MvcResult first = mockMvc.perform(get("/api/files/download/segmented-id")
+                        .header(HttpHeaders.RANGE, "bytes=0-33"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+        String grant = first.getResponse().getHeader(GRANT_HEADER);
+
+        // Then
+        assertNotNull(grant);
+        mockMvc.perform(get("/api/files/download/segmented-id")
+                        .header(HttpHeaders.RANGE, "bytes=34-66")
+                        .header(GRANT_HEADER, grant))
+                .andExpect(status().isPartialContent());
+        mockMvc.perform(get("/api/files/download/segmented-id")
+                        .header(HttpHeaders.RANGE, "bytes=67-99")
+                        .header(GRANT_HEADER, grant))
+                .andExpect(status().isPartialContent());
+        verify(contentTransferService, times(3)).transfer(eq("storage-key"), anyLong(), anyLong(), any(), any(),
+                anyBoolean());
+    }
+
+    @Test
+    @WithMockUser
+    public void segmentWithoutGrantShouldBeRefusedOnceTheLastSlotIsTaken() throws Exception {
+        // Given
+        limitedFile("refused-id");
+        stubRanges(List.of(new ByteRange(0, 49)), List.of(new ByteRange(50, 99)));
+        mockMvc.perform(get("/api/files/download/refused-id").header(HttpHeaders.RANGE, "bytes=0-49"))
+                .andExpect(status().isPartialContent());
+
+        // When & Then
+        mockMvc.perform(get("/api/files/download/refused-id").header(HttpHeaders.RANGE, "bytes=50-99"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.error").value("Access denied"));
+    }
+
+    // Each test gets its own file, the reservation permits outlive a test in the cached context
+    private void limitedFile(String fileId) {
+        FileData fileData = new FileData(fileId, "report.pdf", "storage-key", SIZE, "user-id");
+        fileData.setDownloadLimit(1);
+        when(fileRepository.findById(fileId)).thenReturn(Optional.of(fileData));
+    }
+
+    @SafeVarargs
+    private void stubRanges(List<ByteRange> first, List<ByteRange>... next) {
+        when(contentTransferService.resolveRanges(any(), eq(SIZE), anyString(), anyLong())).thenReturn(first, next);
+    }
+}
@@ -0,0 +1,184 @@
+package com.sharex.controller;
+
+import com.sharex.model.FileData;
+import com.sharex.service.ByteRange;
+import com.sharex.service.ChunkedUploadService;
+import com.sharex.service.ContentTransferService;
+import com.sharex.service.DownloadReservation;
+import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingOverloadedException;
+import com.sharex.service.PreviewService;
+import com.sharex.service.SessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(FileController.class)
+public class FileControllerTest {
+
+    private static final long SIZE = 100;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FileService fileService;
+
+    @MockBean
+    private SessionService sessionService;
+
+    @MockBean
+    private ContentTransferService contentTransferService;
+
+    @MockBean
+    private ChunkedUploadService chunkedUploadService;
+
+    @MockBean
+    private PreviewService previewService;
+
+    private FileData fileData;
+
+    @BeforeEach
+    void setUp() {
+        fileData = new FileData("file-id", "report.pdf", "storage-key", SIZE, "user-id");
+        when(fileService.getFile("file-id")).thenReturn(Optional.of(fileData));
+        when(fileService.validateFileAccess(eq(fileData), any(), any())).thenReturn(true);
+    }
+
+    @Test
+    @WithMockUser
+    public void rangeCoveringWholeFileShouldBeRefusedWhenLimitReached() throws Exception {
+        // Given
+        fileData.setDownloadLimit(1);
+        stubRanges(List.of(new ByteRange(0, SIZE - 1)));
+        when(fileService.reserveDownload(fileData)).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/files/download/file-id").header(HttpHeaders.RANGE, "bytes=0-"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.error").value("Download limit reached"));
+        verify(contentTransferService, never()).transfer(anyString(), anyLong(), anyLong(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    @WithMockUser
+    public void rangeCoveringWholeFileShouldBeCountedAfterTransfer() throws Exception {
+        // Given
+        fileData.setDownloadLimit(1);
+        stubRanges(List.of(new ByteRange(0, SIZE - 1)));
+        DownloadReservation reservation = mock(DownloadReservation.class);
+        when(fileService.reserveDownload(fileData)).thenReturn(Optional.of(reservation));
+
+        // When & Then
+        mockMvc.perform(get("/api/files/download/file-id").header(HttpHeaders.RANGE, "bytes=0-"))
+                .andExpect(status().isPartialContent());
+        // Sent without sendfile, so the download is only counted once the body is written
+        verify(contentTransferService).transfer(eq("storage-key"), eq(0L), eq(SIZE), any(), any(), eq(false));
+        verify(fileService).completeDownload(reservation);
+        verify(reservation).release();
+    }
+
+    @Test
+    @WithMockUser
+    public void firstSegmentOfLimitedFileShouldBeCountedAndIssueCountedGrant() throws Exception {
+        // Given
+        fileData.setDownloadLimit(1);
+        stubRanges(List.of(new ByteRange(0, 49)));
+        DownloadReservation reservation = mock(DownloadReservation.class);
+        when(fileService.reserveDownload(fileData)).thenReturn(Optional.of(reservation));
+        when(fileService.issueCountedDownloadGrant(fileData)).thenReturn("counted-grant");
+
+        // When & Then
+        mockMvc.perform(get("/api/files/download/file-id").header(HttpHeaders.RANGE, "bytes=0-49"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("X-Download-Grant", "counted-grant"));
+        verify(fileService).completeDownload(reservation);
+        verify(contentTransferService).transfer(eq("storage-key"), eq(0L), eq(50L), any(), any(), eq(true));
+    }
+
+    @Test
+    @WithMockUser
+    public void segmentOfUnlimitedFileShouldNotBeCounted() throws Exception {
+        // Given
+        stubRanges(List.of(new ByteRange(0, 49)));
+
+        // When & Then
+        mockMvc.perform(get("/api/files/download/file-id").header(HttpHeaders.RANGE, "bytes=0-49"))
+                .andExpect(status().isPartialContent());
+        verify(fileService, never()).reserveDownload(any());
+        verify(fileService, never()).issueCountedDownloadGrant(any());
+    }
+
+    @Test
+    @WithMockUser
+    public void uploadShouldReturnServiceUnavailableWhenHashingIsOverloaded() throws Exception {
+        // Given
+        when(sessionService.isUserAuthenticated(any())).thenReturn(true);
+        when(fileService.uploadFile(any(), any(), eq("secret"), any(), any(), any()))
+                .thenThrow(new PasswordHashingOverloadedException(3));
+        MockMultipartFile file = new MockMultipartFile("file", "report.pdf", "application/pdf", new byte[10]);
+
+        // When & Then
+        mockMvc.perform(multipart("/api/files/upload").file(file).param("password", "secret").with(csrf()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+    }
+
+    @Test
+    @WithMockUser
+    public void uploadShouldRejectMalformedExpiryDate() throws Exception {
+        // Given
+        when(sessionService.isUserAuthenticated(any())).thenReturn(true);
+        MockMultipartFile file = new MockMultipartFile("file", "report.pdf", "application/pdf", new byte[10]);
+
+        // When & Then
+        mockMvc.perform(multipart("/api/files/upload").file(file).param("expiryDate", "tomorrow").with(csrf()))
+                .andExpect(status().isBadRequest());
+        verify(fileService, never()).uploadFile(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    public void userFilesShouldReturnServiceUnavailableWhenDatabaseIsBusy() throws Exception {
+        // Given
+        when(sessionService.isUserAuthenticated(any())).thenReturn(true);
+        when(sessionService.getCurrentUserId(any())).thenReturn("user-id");
+        when(fileService.getUserFilesForProfile("user-id"))
+                .thenThrow(new CannotCreateTransactionException("Could not open JDBC Connection"));
+
+        // When & Then
+        mockMvc.perform(get("/api/files/user"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    private void stubRanges(List<ByteRange> ranges) {
+        when(contentTransferService.resolveRanges(any(), eq(SIZE), anyString(), anyLong())).thenReturn(ranges);
+    }
+}
@@ -5,22 +5,28 @@ import com.sharex.dto.LoginRequest;
 import com.sharex.dto.RegisterRequest;
 import com.sharex.model.UserData;
 import com.sharex.service.FileService;
+import com.sharex.service.PasswordHashingOverloadedException;
 import com.sharex.service.SessionService;
+import com.sharex.service.UserAccountException;
 import com.sharex.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.CannotCreateTransactionException;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
@@ -67,7 +73,7 @@ public class UserControllerTest {
         RegisterRequest request = new RegisterRequest("testuser", "test@example.com", "password123");
         
         when(userService.register(any(RegisterRequest.class)))
-            .thenThrow(new RuntimeException("User already exists"));
+            .thenThrow(new UserAccountException("User already exists"));
 
         mockMvc.perform(post("/api/users/register")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -102,7 +108,7 @@ public class UserControllerTest {
         LoginRequest request = new LoginRequest("testuser", "wrongpassword");
         
         when(userService.login(any(LoginRequest.class)))
-            .thenThrow(new RuntimeException("Invalid username or password"));
+            .thenThrow(new UserAccountException("Invalid username or password"));
 
         mockMvc.perform(post("/api/users/login")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -111,4 +117,31 @@ public class UserControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Invalid username or password"));
     }
-} 
+
+    @Test
+    @WithMockUser
+    public void loginShouldReturnServiceUnavailableWhenHashingIsOverloaded() throws Exception {
+        LoginRequest request = new LoginRequest("testuser", "password123");
+
+        when(userService.login(any(LoginRequest.class)))
+            .thenThrow(new PasswordHashingOverloadedException(3));
+
+        mockMvc.perform(post("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))
+                .with(csrf()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+    }
+
+    @Test
+    @WithMockUser
+    public void profileShouldReturnServiceUnavailableWhenDatabaseIsBusy() throws Exception {
+        when(sessionService.isUserAuthenticated(any()))
+            .thenThrow(new CannotCreateTransactionException("Could not open JDBC Connection"));
+
+        mockMvc.perform(get("/api/users/profile"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+}
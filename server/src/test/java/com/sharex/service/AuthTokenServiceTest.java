@@ -0,0 +1,76 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00Z");
+    private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @Test
+    void verifyShouldReturnClaimsOfIssuedToken() {
+        // Given
+        AuthTokenService service = new AuthTokenService("k1:first-secret", "k1", Duration.ofMinutes(30), CLOCK);
+
+        // When
+        Optional<AuthToken> token = service.verify(service.issue("user-id", "user|name"));
+
+        // Then
+        assertTrue(token.isPresent());
+        assertEquals("user-id", token.get().getUserId());
+        assertEquals("user|name", token.get().getUsername());
+    }
+
+    @Test
+    void verifyShouldAcceptTokensSignedWithRetiredKeyAfterRotation() {
+        // Given
+        AuthTokenService before = new AuthTokenService("k1:first-secret", "k1", Duration.ofMinutes(30), CLOCK);
+        String token = before.issue("user-id", "user");
+
+        // When
+        AuthTokenService after = new AuthTokenService("k2:second-secret,k1:first-secret", "k2",
+                Duration.ofMinutes(30), CLOCK);
+        AuthTokenService dropped = new AuthTokenService("k2:second-secret", "k2", Duration.ofMinutes(30), CLOCK);
+
+        // Then
+        assertTrue(after.verify(token).isPresent());
+        assertTrue(after.issue("user-id", "user").startsWith("k2."));
+        assertTrue(dropped.verify(token).isEmpty());
+    }
+
+    @Test
+    void verifyShouldRejectExpiredTamperedAndRevokedTokens() {
+        // Given
+        AuthTokenService service = new AuthTokenService("k1:first-secret", "k1", Duration.ofMinutes(30), CLOCK);
+        String token = service.issue("user-id", "user");
+        AuthTokenService later = new AuthTokenService("k1:first-secret", "k1", Duration.ofMinutes(30),
+                Clock.fixed(NOW.plus(Duration.ofMinutes(31)), ZoneOffset.UTC));
+        AuthTokenService otherKey = new AuthTokenService("k1:other-secret", "k1", Duration.ofMinutes(30), CLOCK);
+
+        // When
+        service.revoke(service.verify(token).orElseThrow());
+
+        // Then
+        assertTrue(later.verify(token).isEmpty());
+        assertTrue(otherKey.verify(token).isEmpty());
+        assertTrue(service.verify(token).isEmpty());
+        assertTrue(service.verify("k1.garbage").isEmpty());
+        assertTrue(service.verify(null).isEmpty());
+    }
+
+    @Test
+    void constructorShouldRejectUnknownActiveKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AuthTokenService("k1:secret", "k9", Duration.ofMinutes(30), CLOCK));
+    }
+}
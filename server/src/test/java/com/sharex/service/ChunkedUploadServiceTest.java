@@ -0,0 +1,191 @@
+package com.sharex.service;
+
+import com.sharex.model.UploadSession;
+import com.sharex.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ChunkedUploadServiceTest {
+
+    @TempDir
+    Path stagingRoot;
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private ChunkedUploadService chunkedUploadService;
+
+    private UploadSession session;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chunkedUploadService, "stagingRoot", stagingRoot.toString());
+        ReflectionTestUtils.setField(chunkedUploadService, "bufferSize", DataSize.ofBytes(4));
+        session = new UploadSession("upload-1", "user-1", "report.pdf", 10, 4, LocalDateTime.now().plusHours(1));
+    }
+
+    @Test
+    void putChunkShouldAcceptChunksOutOfOrder() throws IOException {
+        // Given
+        byte[] content = "0123456789".getBytes();
+
+        // When
+        putChunk(2, Arrays.copyOfRange(content, 8, 10));
+        putChunk(0, Arrays.copyOfRange(content, 0, 4));
+
+        // Then
+        assertEquals(3, session.getChunkCount());
+        assertEquals(List.of(0, 2), chunkedUploadService.receivedChunks(session));
+    }
+
+    @Test
+    void putChunkShouldRejectChecksumMismatchAndWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.putChunk(session, 0,
+                new ByteArrayInputStream("0123".getBytes()), sha256("9999".getBytes())));
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.putChunk(session, 0,
+                new ByteArrayInputStream("012".getBytes()), sha256("012".getBytes())));
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.putChunk(session, 3,
+                new ByteArrayInputStream("0".getBytes()), sha256("0".getBytes())));
+    }
+
+    @Test
+    void putChunkShouldNotLeaveRejectedChunkBehind() throws IOException {
+        // When
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.putChunk(session, 1,
+                new ByteArrayInputStream("4567".getBytes()), sha256("7654".getBytes())));
+
+        // Then
+        assertEquals(List.of(), chunkedUploadService.receivedChunks(session));
+        try (Stream<Path> files = Files.list(stagingRoot.resolve("upload-1"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void completeShouldStreamChunksInOrderIntoStorage() throws IOException {
+        // Given
+        byte[] content = "0123456789".getBytes();
+        putChunk(1, Arrays.copyOfRange(content, 4, 8));
+        putChunk(2, Arrays.copyOfRange(content, 8, 10));
+        putChunk(0, Arrays.copyOfRange(content, 0, 4));
+        when(uploadSessionRepository.deleteByUploadId("upload-1")).thenReturn(1);
+        byte[][] assembled = new byte[1][];
+        when(fileService.storeFile(any(InputStream.class), eq(10L), eq("report.pdf"),
+                argThat(options -> "user-1".equals(options.getUserId()))))
+                .thenAnswer(invocation -> {
+                    assembled[0] = ((InputStream) invocation.getArgument(0)).readAllBytes();
+                    return "file-1";
+                });
+
+        // When
+        String fileId = chunkedUploadService.complete(session);
+
+        // Then
+        assertEquals("file-1", fileId);
+        assertArrayEquals(content, assembled[0]);
+        assertFalse(Files.exists(stagingRoot.resolve("upload-1")));
+    }
+
+    @Test
+    void completeShouldRefuseWhileChunksAreMissing() throws IOException {
+        // Given
+        putChunk(0, "0123".getBytes());
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.complete(session));
+        verify(uploadSessionRepository, never()).deleteByUploadId(any());
+    }
+
+    @Test
+    void completeShouldGiveSessionBackWhenStoringRejectsTheFile() throws IOException {
+        // Given
+        putChunk(0, "0123".getBytes());
+        putChunk(1, "4567".getBytes());
+        putChunk(2, "89".getBytes());
+        when(uploadSessionRepository.deleteByUploadId("upload-1")).thenReturn(1);
+        when(fileService.storeFile(any(InputStream.class), anyLong(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Invalid file name"));
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.complete(session));
+        verify(uploadSessionRepository).save(session);
+        assertEquals(List.of(0, 1, 2), chunkedUploadService.receivedChunks(session));
+    }
+
+    @Test
+    void purgeShouldDeleteStagingDirectoriesWithoutSession() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(chunkedUploadService, "sessionTtl", Duration.ofHours(24));
+        putChunk(0, "0123".getBytes());
+        Path orphan = Files.createDirectories(stagingRoot.resolve("orphan"));
+        Files.write(orphan.resolve("0.part"), "0123".getBytes());
+        Path fresh = Files.createDirectories(stagingRoot.resolve("fresh"));
+        FileTime longAgo = FileTime.from(Instant.now().minus(Duration.ofDays(3)));
+        Files.setLastModifiedTime(stagingRoot.resolve("upload-1"), longAgo);
+        Files.setLastModifiedTime(orphan, longAgo);
+        when(uploadSessionRepository.existsById("upload-1")).thenReturn(true);
+        when(uploadSessionRepository.existsById("orphan")).thenReturn(false);
+
+        // When
+        chunkedUploadService.purgeExpired();
+
+        // Then
+        assertFalse(Files.exists(orphan));
+        // A complete still streaming a recently touched directory is left alone
+        assertTrue(Files.exists(fresh));
+        assertEquals(List.of(0), chunkedUploadService.receivedChunks(session));
+    }
+
+    private void putChunk(int index, byte[] bytes) throws IOException {
+        chunkedUploadService.putChunk(session, index, new ByteArrayInputStream(bytes), sha256(bytes));
+    }
+
+    private String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
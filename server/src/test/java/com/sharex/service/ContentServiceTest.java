@@ -0,0 +1,237 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.repository.ContentBlobRepository;
+import com.sharex.storage.FileSystemBlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+public class ContentServiceTest {
+
+    private static final byte[] CONTENT = "shared content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private ContentBlobRepository contentBlobRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    // Stands in for the content_blobs table, with the same conditional updates as the JPQL queries
+    private final Map<String, ContentBlob> rows = new ConcurrentHashMap<>();
+
+    private FileSystemBlobStore blobStore;
+
+    private ContentService contentService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStore = new FileSystemBlobStore(root.toString(), DataSize.ofKilobytes(4));
+        contentService = new ContentService();
+        ReflectionTestUtils.setField(contentService, "blobStore", blobStore);
+        ReflectionTestUtils.setField(contentService, "contentBlobRepository", contentBlobRepository);
+        ReflectionTestUtils.setField(contentService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(contentService, "hotContentCache",
+                new HotContentCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64)));
+        ReflectionTestUtils.setField(contentService, "compressionLevel", 1);
+        ReflectionTestUtils.setField(contentService, "compressionSampleSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(contentService, "compressionMaxRatio", 0.9);
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+        lenient().when(contentBlobRepository.incrementRefCount(anyString())).thenAnswer(invocation ->
+                rows.computeIfPresent(invocation.getArgument(0), (digest, row) -> {
+                    row.setRefCount(row.getRefCount() + 1);
+                    return row;
+                }) != null ? 1 : 0);
+        lenient().when(contentBlobRepository.decrementRefCount(anyString())).thenAnswer(invocation ->
+                rows.computeIfPresent(invocation.getArgument(0), (digest, row) -> {
+                    row.setRefCount(row.getRefCount() - 1);
+                    return row;
+                }) != null ? 1 : 0);
+        lenient().when(contentBlobRepository.deleteIfUnreferenced(anyString())).thenAnswer(invocation -> {
+            String digest = invocation.getArgument(0);
+            ContentBlob row = rows.get(digest);
+            return row != null && row.getRefCount() <= 0 && rows.remove(digest, row) ? 1 : 0;
+        });
+        lenient().when(contentBlobRepository.findById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        lenient().when(contentBlobRepository.saveAndFlush(any(ContentBlob.class))).thenAnswer(invocation -> {
+            ContentBlob blob = invocation.getArgument(0);
+            if (rows.putIfAbsent(blob.getDigest(), blob) != null) {
+                throw new DataIntegrityViolationException("Duplicate digest " + blob.getDigest());
+            }
+            return blob;
+        });
+    }
+
+    @Test
+    void storeShouldRegisterNewContentWithOneReference() throws IOException {
+        // When
+        ContentBlob stored = store();
+
+        // Then
+        assertEquals(1, rows.get(stored.getDigest()).getRefCount());
+        try (InputStream in = contentService.open(stored.getStorageKey(), stored.getEncoding())) {
+            assertEquals(new String(CONTENT, StandardCharsets.UTF_8),
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void storingSameContentAgainShouldShareTheBlob() throws IOException {
+        // When
+        ContentBlob first = store();
+        ContentBlob second = store();
+
+        // Then
+        assertEquals(first.getStorageKey(), second.getStorageKey());
+        assertEquals(2, rows.get(first.getDigest()).getRefCount());
+        assertEquals(CONTENT.length, contentService.getWrittenBytes());
+        assertEquals(2L * CONTENT.length, contentService.getIngestedBytes());
+    }
+
+    @Test
+    void releaseShouldDeleteBlobWithLastReferenceOnly() throws IOException {
+        // Given
+        ContentBlob stored = store();
+        store();
+
+        // When & Then
+        assertFalse(contentService.release(stored.getDigest(), stored.getStorageKey()));
+        assertTrue(blobStore.locate(stored.getStorageKey()).isPresent());
+
+        assertTrue(contentService.release(stored.getDigest(), stored.getStorageKey()));
+        assertFalse(blobStore.locate(stored.getStorageKey()).isPresent());
+        assertFalse(rows.containsKey(stored.getDigest()));
+    }
+
+    @Test
+    void releasingContentTwiceShouldBeHarmless() throws IOException {
+        // Given
+        ContentBlob stored = store();
+        contentService.release(stored.getDigest(), stored.getStorageKey());
+
+        // When
+        boolean deletedAgain = contentService.release(stored.getDigest(), stored.getStorageKey());
+
+        // Then
+        assertFalse(deletedAgain);
+        assertTrue(rows.isEmpty());
+    }
+
+    @Test
+    void compressibleContentShouldBeStoredAsGzip() throws IOException {
+        // Given
+        byte[] text = "line of log output\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ContentBlob stored = contentService.store(new ByteArrayInputStream(text), true);
+
+        // Then
+        assertEquals(ContentService.GZIP, stored.getEncoding());
+        assertEquals(text.length, stored.getSizeBytes());
+        assertTrue(stored.getStoredSizeBytes() < text.length);
+        try (InputStream in = contentService.open(stored.getStorageKey(), stored.getEncoding())) {
+            assertArrayEquals(text, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void incompressibleContentShouldBeStoredAsIs() throws IOException {
+        // Given
+        byte[] random = new byte[16 * 1024];
+        new Random(7).nextBytes(random);
+        byte[] png = new byte[16 * 1024];
+        System.arraycopy(new byte[] {(byte) 0x89, 0x50, 0x4e, 0x47}, 0, png, 0, 4);
+
+        // When
+        ContentBlob storedRandom = contentService.store(new ByteArrayInputStream(random), true);
+        ContentBlob storedPng = contentService.store(new ByteArrayInputStream(png), true);
+
+        // Then
+        assertNull(storedRandom.getEncoding());
+        // Known compressed formats are skipped without trying, even when the sample would shrink
+        assertNull(storedPng.getEncoding());
+        assertEquals(png.length, storedPng.getStoredSizeBytes());
+    }
+
+    @Test
+    void concurrentUploadsOfSameContentShouldRegisterOneBlob() throws Exception {
+        // Given
+        int uploads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<ContentBlob>> tasks = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            tasks.add(() -> {
+                start.await();
+                return store();
+            });
+        }
+
+        // When
+        List<ContentBlob> stored = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        try {
+            List<Future<ContentBlob>> futures = new ArrayList<>();
+            for (Callable<ContentBlob> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<ContentBlob> future : futures) {
+                stored.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        String storageKey = stored.get(0).getStorageKey();
+        assertTrue(stored.stream().allMatch(blob -> blob.getStorageKey().equals(storageKey)));
+        assertEquals(uploads, rows.get(stored.get(0).getDigest()).getRefCount());
+        // The copies written by the losing uploads were deleted again
+        assertEquals(CONTENT.length, contentService.getWrittenBytes());
+    }
+
+    private ContentBlob store() throws IOException {
+        return contentService.store(new ByteArrayInputStream(CONTENT));
+    }
+}
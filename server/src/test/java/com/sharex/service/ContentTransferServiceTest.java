@@ -0,0 +1,273 @@
+package com.sharex.service;
+
+import com.sharex.storage.FileSystemBlobStore;
+import com.sharex.storage.StoredBlob;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentTransferServiceTest {
+
+    private static final String ETAG = "\"file-id\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path root;
+
+    private ContentTransferService contentTransferService;
+
+    private HotContentCache hotContentCache;
+
+    private StoredBlob blob;
+
+    private StoredBlob gzipBlob;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString(), DataSize.ofKilobytes(4));
+        blob = blobStore.write(new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.US_ASCII)));
+        try (GzipCompressingInputStream gzip = new GzipCompressingInputStream(
+                new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.US_ASCII)), 1)) {
+            gzipBlob = blobStore.write(gzip);
+        }
+
+        contentTransferService = new ContentTransferService();
+        hotContentCache = new HotContentCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(contentTransferService, "blobStore", blobStore);
+        ReflectionTestUtils.setField(contentTransferService, "hotContentCache", hotContentCache);
+        ReflectionTestUtils.setField(contentTransferService, "sendfileEnabled", true);
+        ReflectionTestUtils.setField(contentTransferService, "sendfileMinSize", DataSize.ofKilobytes(48));
+        ReflectionTestUtils.setField(contentTransferService, "mmapMaxSize", DataSize.ofMegabytes(4));
+    }
+
+    @Test
+    void resolveRangesShouldReturnEmptyListWithoutRangeHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        assertTrue(contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED).isEmpty());
+    }
+
+    @Test
+    void resolveRangesShouldIgnoreRangeWhenIfRangeDoesNotMatch() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-4");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other-file\"");
+
+        // When
+        List<ByteRange> ranges = contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED);
+
+        // Then
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    void resolveRangesShouldCoalesceOverlappingRanges() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-7,0-2,2-3");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+        // When
+        List<ByteRange> ranges = contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED);
+
+        // Then
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(3, ranges.get(0).getEnd());
+        assertEquals(5, ranges.get(1).getStart());
+        assertEquals(7, ranges.get(1).getEnd());
+    }
+
+    @Test
+    void resolveRangesShouldRejectUnsatisfiableRange() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void resolveRangesShouldRejectEmptySuffixRange() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=-0");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void resolveRangesShouldIgnoreMalformedRangeHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=abc");
+
+        assertTrue(contentTransferService.resolveRanges(request, 10, ETAG, LAST_MODIFIED).isEmpty());
+    }
+
+    @Test
+    void transferShouldWriteOnlyTheRequestedRegion() throws IOException {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        contentTransferService.transfer(blob.getKey(), 3, 4, request, response);
+
+        // Then
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals("3456", response.getContentAsString());
+    }
+
+    @Test
+    void transferShouldServeRepeatedDownloadsFromHotCache() throws IOException {
+        // Given
+        contentTransferService.transfer(blob.getKey(), 0, 10, new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        contentTransferService.transfer(blob.getKey(), 2, 5, new MockHttpServletRequest(), response);
+
+        // Then
+        assertEquals("23456", response.getContentAsString());
+        assertEquals(1, hotContentCache.getHitCount());
+    }
+
+    @Test
+    void transferShouldWriteBodyItselfWhenSendfileIsNotAllowed() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(contentTransferService, "sendfileMinSize", DataSize.ofBytes(0));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        contentTransferService.transfer(blob.getKey(), 0, 10, request, response, false);
+
+        // Then
+        assertEquals("0123456789", response.getContentAsString());
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void transferWithoutSendfileShouldWriteLargeRegionAsMappedWindows() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(contentTransferService, "hotContentCache",
+                new HotContentCache(DataSize.ofBytes(0), DataSize.ofBytes(0)));
+        ReflectionTestUtils.setField(contentTransferService, "mmapMaxSize", DataSize.ofBytes(4));
+        CoyoteOutputStream out = mock(CoyoteOutputStream.class);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        List<Integer> windows = new ArrayList<>();
+        doAnswer(invocation -> {
+            ByteBuffer window = invocation.getArgument(0);
+            windows.add(window.remaining());
+            while (window.hasRemaining()) {
+                written.write(window.get());
+            }
+            return null;
+        }).when(out).write(any(ByteBuffer.class));
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(out);
+
+        // When
+        contentTransferService.transfer(blob.getKey(), 0, 10, new MockHttpServletRequest(), response);
+
+        // Then
+        assertEquals("0123456789", written.toString(StandardCharsets.US_ASCII));
+        assertEquals(List.of(4, 4, 2), windows);
+        verify(out, never()).write(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    void transferRangesShouldWriteMultipartByteranges() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<ByteRange> ranges = List.of(new ByteRange(0, 1), new ByteRange(8, 9));
+
+        // When
+        contentTransferService.transferRanges(blob.getKey(), null, ranges, 10, "application/octet-stream",
+                response);
+
+        // Then
+        String body = response.getContentAsString();
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        assertEquals(body.getBytes(StandardCharsets.US_ASCII).length, response.getContentLengthLong());
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+    }
+
+    @Test
+    void acceptsGzipShouldHonourQualityValues() {
+        assertTrue(contentTransferService.acceptsGzip(requestAccepting("gzip, deflate, br")));
+        assertTrue(contentTransferService.acceptsGzip(requestAccepting("br;q=1.0, *;q=0.5")));
+        assertFalse(contentTransferService.acceptsGzip(requestAccepting("gzip;q=0, *")));
+        assertFalse(contentTransferService.acceptsGzip(requestAccepting("identity")));
+        assertFalse(contentTransferService.acceptsGzip(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void transferDecodedShouldServeOriginalBytesOfGzipContent() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        contentTransferService.transferDecoded(gzipBlob.getKey(), 3, 4, response);
+
+        // Then
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals("3456", response.getContentAsString());
+    }
+
+    @Test
+    void transferRangesShouldDecodeGzipContentInOnePass() throws IOException {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<ByteRange> ranges = List.of(new ByteRange(0, 1), new ByteRange(8, 9));
+
+        // When
+        contentTransferService.transferRanges(gzipBlob.getKey(), ContentService.GZIP, ranges, 10,
+                "application/octet-stream", response);
+
+        // Then
+        String body = response.getContentAsString();
+        assertEquals(body.getBytes(StandardCharsets.US_ASCII).length, response.getContentLengthLong());
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+    }
+
+    private MockHttpServletRequest requestAccepting(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return request;
+    }
+}
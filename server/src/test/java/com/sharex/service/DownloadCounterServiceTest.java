@@ -0,0 +1,112 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DownloadCounterServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private DownloadCounterService downloadCounterService;
+
+    @Test
+    void flushShouldWriteOneAggregatedUpdatePerFile() {
+        // Given
+        downloadCounterService.increment("file-a");
+        downloadCounterService.increment("file-a");
+        downloadCounterService.increment("file-b");
+
+        // When
+        downloadCounterService.flush();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertEquals(3L, batch.getValue().stream().mapToLong(row -> (Long) row[0]).sum());
+        assertEquals(0, downloadCounterService.pendingCount("file-a"));
+        verify(eventPublisher, times(2)).publishEvent(any(FileChangedEvent.class));
+    }
+
+    @Test
+    void flushShouldSkipDatabaseWhenNothingIsPending() {
+        downloadCounterService.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void failedFlushShouldKeepIncrementsPending() {
+        // Given
+        downloadCounterService.increment("file-a");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+        // When & Then
+        assertThrows(DataAccessResourceFailureException.class, () -> downloadCounterService.flush());
+        assertEquals(1, downloadCounterService.pendingCount("file-a"));
+        assertEquals(6, downloadCounterService.currentCount("file-a", 5));
+    }
+
+    @Test
+    void concurrentIncrementsShouldNotBeLostAcrossFlushes() throws InterruptedException {
+        // Given
+        List<Long> flushed = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            rows.forEach(row -> flushed.add((Long) row[0]));
+            return new int[rows.size()];
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        for (int thread = 0; thread < 4; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    downloadCounterService.increment("file-a");
+                }
+            });
+        }
+        for (int i = 0; i < 20; i++) {
+            downloadCounterService.flush();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        downloadCounterService.flush();
+
+        // Then
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), anyList());
+        assertEquals(40_000L, flushed.stream().mapToLong(Long::longValue).sum());
+    }
+}
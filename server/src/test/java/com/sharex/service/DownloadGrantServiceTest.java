@@ -0,0 +1,106 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DownloadGrantServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00Z");
+
+    private DownloadGrantService downloadGrantService;
+    private FileData fileData;
+
+    @BeforeEach
+    void setUp() {
+        downloadGrantService = new DownloadGrantService("test-secret", Duration.ofMinutes(15),
+                Clock.fixed(NOW, ZoneOffset.UTC));
+        fileData = new FileData("file-id", "report.pdf", "storage-key", 100, "user-id");
+        fileData.setPasswordHash("$2a$10$hash");
+    }
+
+    @Test
+    void verifyShouldAcceptGrantIssuedForSameFile() {
+        String grant = downloadGrantService.issue(fileData);
+
+        assertTrue(downloadGrantService.verify(grant, fileData));
+    }
+
+    @Test
+    void verifyShouldRejectGrantForAnotherFile() {
+        // Given
+        String grant = downloadGrantService.issue(fileData);
+        FileData other = new FileData("other-id", "report.pdf", "storage-key", 100, "user-id");
+        other.setPasswordHash(fileData.getPasswordHash());
+
+        // When & Then
+        assertFalse(downloadGrantService.verify(grant, other));
+    }
+
+    @Test
+    void verifyShouldRejectExpiredGrant() {
+        // Given
+        String grant = downloadGrantService.issue(fileData);
+        DownloadGrantService later = new DownloadGrantService("test-secret", Duration.ofMinutes(15),
+                Clock.fixed(NOW.plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+
+        // When & Then
+        assertFalse(later.verify(grant, fileData));
+    }
+
+    @Test
+    void verifyShouldRejectGrantAfterPasswordChange() {
+        // Given
+        String grant = downloadGrantService.issue(fileData);
+
+        // When
+        fileData.setPasswordHash("$2a$10$other");
+
+        // Then
+        assertFalse(downloadGrantService.verify(grant, fileData));
+    }
+
+    @Test
+    void verifyShouldRejectTamperedOrMalformedGrant() {
+        String grant = downloadGrantService.issue(fileData);
+        int index = grant.indexOf('.') + 5;
+        String tampered = grant.substring(0, index) + (grant.charAt(index) == 'A' ? 'B' : 'A')
+                + grant.substring(index + 1);
+
+        assertFalse(downloadGrantService.verify(tampered, fileData));
+        assertFalse(downloadGrantService.verify("garbage", fileData));
+        assertFalse(downloadGrantService.verify("%%%.%%%", fileData));
+        assertFalse(downloadGrantService.verify(null, fileData));
+    }
+
+    @Test
+    void verifyCountedShouldAcceptOnlyCountedGrants() {
+        // Given
+        String plain = downloadGrantService.issue(fileData);
+        String counted = downloadGrantService.issue(fileData, true);
+
+        // When & Then
+        assertFalse(downloadGrantService.verifyCounted(plain, fileData));
+        assertTrue(downloadGrantService.verifyCounted(counted, fileData));
+        assertTrue(downloadGrantService.verify(counted, fileData));
+    }
+
+    @Test
+    void verifyCountedShouldRejectCountedGrantForAnotherFile() {
+        // Given
+        String grant = downloadGrantService.issue(fileData, true);
+        FileData other = new FileData("other-id", "report.pdf", "storage-key", 100, "user-id");
+        other.setPasswordHash(fileData.getPasswordHash());
+
+        // When & Then
+        assertFalse(downloadGrantService.verifyCounted(grant, other));
+    }
+}
@@ -0,0 +1,113 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+public class DownloadReservationServiceTest {
+
+    @Mock
+    private DownloadCounterService downloadCounterService;
+
+    @InjectMocks
+    private DownloadReservationService downloadReservationService;
+
+    private FileData fileData;
+
+    @BeforeEach
+    void setUp() {
+        fileData = new FileData("file-id", "report.pdf", "storage-key", 100, "user-id");
+        fileData.setDownloadCount(0);
+        fileData.setDownloadLimit(1);
+        lenient().when(downloadCounterService.currentCount(anyString(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    void tryReserveShouldGrantExactlyLimitSlotsUnderConcurrency() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Callable<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            attempts.add(() -> downloadReservationService.tryReserve(fileData).isPresent());
+        }
+
+        // When
+        int granted = 0;
+        for (Future<Boolean> result : executor.invokeAll(attempts)) {
+            if (result.get()) {
+                granted++;
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(1, granted);
+    }
+
+    @Test
+    void releaseShouldReturnTheSlot() {
+        // Given
+        Optional<DownloadReservation> first = downloadReservationService.tryReserve(fileData);
+        assertTrue(first.isPresent());
+        assertTrue(downloadReservationService.tryReserve(fileData).isEmpty());
+
+        // When
+        first.get().release();
+
+        // Then
+        assertTrue(downloadReservationService.tryReserve(fileData).isPresent());
+    }
+
+    @Test
+    void commitShouldKeepTheSlotConsumed() {
+        // Given
+        DownloadReservation reservation = downloadReservationService.tryReserve(fileData).orElseThrow();
+
+        // When
+        reservation.commit();
+        reservation.release();
+
+        // Then
+        assertTrue(downloadReservationService.tryReserve(fileData).isEmpty());
+    }
+
+    @Test
+    void tryReserveShouldSeedFromPersistedCount() {
+        // Given
+        fileData.setDownloadLimit(3);
+        fileData.setDownloadCount(2);
+
+        // When & Then
+        assertTrue(downloadReservationService.tryReserve(fileData).isPresent());
+        assertTrue(downloadReservationService.tryReserve(fileData).isEmpty());
+    }
+
+    @Test
+    void tryReserveShouldAlwaysGrantFilesWithoutLimit() {
+        fileData.setDownloadLimit(null);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(downloadReservationService.tryReserve(fileData).isPresent());
+        }
+    }
+}
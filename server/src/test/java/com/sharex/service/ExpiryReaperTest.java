@@ -0,0 +1,119 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import com.sharex.repository.FileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ExpiryReaperTest {
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private DownloadCounterService downloadCounterService;
+
+    @Mock
+    private DataSource dataSource;
+
+    @InjectMocks
+    private ExpiryReaper expiryReaper;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(expiryReaper, "enabled", true);
+        ReflectionTestUtils.setField(expiryReaper, "batchSize", 10);
+        ReflectionTestUtils.setField(expiryReaper, "maxBatchesPerTick", 1);
+        ReflectionTestUtils.setField(expiryReaper, "grace", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(expiryReaper, "lookahead", Duration.ofHours(1));
+        ReflectionTestUtils.setField(expiryReaper, "dutyCycle", 0.25);
+    }
+
+    @Test
+    void reaperShouldCountOnlyBytesFreedInTheBlobStore() throws IOException {
+        // Given
+        FileData unique = expired("unique");
+        FileData shared = expired("shared");
+        FileData alreadyDeleted = expired("already-deleted");
+        when(fileRepository.findExpiredFileIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of("unique", "shared", "already-deleted"));
+        when(fileRepository.findAllById(anyIterable())).thenReturn(List.of(unique, shared, alreadyDeleted));
+        when(fileService.deleteFile(unique)).thenReturn(1024L);
+        when(fileService.deleteFile(shared)).thenReturn(0L);
+        when(fileService.deleteFile(alreadyDeleted)).thenReturn(-1L);
+
+        // When
+        expiryReaper.scan();
+        expiryReaper.tick();
+
+        // Then
+        assertEquals(2, expiryReaper.getDeletedFileCount());
+        assertEquals(1024, expiryReaper.getReclaimedBytes());
+        assertEquals(0, expiryReaper.getPendingCount());
+    }
+
+    @Test
+    void reaperShouldSkipFilesWhoseExpiryWasExtended() throws IOException {
+        // Given
+        FileData extended = expired("extended");
+        extended.setExpiryDate(LocalDateTime.now().plusDays(1));
+        when(fileRepository.findExpiredFileIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of("extended"));
+        when(fileRepository.findAllById(anyIterable())).thenReturn(List.of(extended));
+
+        // When
+        expiryReaper.scan();
+        expiryReaper.tick();
+
+        // Then
+        assertEquals(0, expiryReaper.getDeletedFileCount());
+        verify(fileService, never()).deleteFile(extended);
+    }
+
+    @Test
+    void failedDeleteShouldNotBeCounted() throws IOException {
+        // Given
+        FileData broken = expired("broken");
+        when(fileRepository.findExpiredFileIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of("broken"));
+        when(fileRepository.findAllById(anyIterable())).thenReturn(List.of(broken));
+        when(fileService.deleteFile(broken)).thenThrow(new IOException("disk gone"));
+
+        // When
+        expiryReaper.scan();
+        expiryReaper.tick();
+
+        // Then
+        assertEquals(0, expiryReaper.getDeletedFileCount());
+        assertEquals(0, expiryReaper.getReclaimedBytes());
+    }
+
+    private static FileData expired(String fileId) {
+        FileData fileData = new FileData(fileId, fileId + ".bin", fileId + "-key", 2048, "user-id");
+        fileData.setExpiryDate(LocalDateTime.now().minusHours(1));
+        return fileData;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileListCursorTest {
+
+    @Test
+    void decodeShouldRestoreEncodedPosition() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000);
+        String encoded = new FileListCursor(createdAt, "file-id").encode();
+
+        // When
+        FileListCursor cursor = FileListCursor.decode(encoded);
+
+        // Then
+        assertEquals(createdAt, cursor.getCreatedAt());
+        assertEquals("file-id", cursor.getFileId());
+    }
+
+    @Test
+    void decodeShouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> FileListCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> FileListCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+}
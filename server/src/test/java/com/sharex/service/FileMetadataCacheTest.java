@@ -0,0 +1,135 @@
+package com.sharex.service;
+
+import com.sharex.dto.FileMetadataResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileMetadataCacheTest {
+
+    private FileMetadataCache fileMetadataCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        fileMetadataCache = new FileMetadataCache(100, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getShouldLoadOnceAndServeHitsFromMemory() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            fileMetadataCache.get("file-id", this::load);
+        }
+
+        // Then
+        assertEquals(1, loads.get());
+        assertEquals(4, fileMetadataCache.stats().hitCount());
+        assertEquals(1, fileMetadataCache.stats().missCount());
+    }
+
+    @Test
+    void fileChangedEventShouldInvalidateEntry() {
+        // Given
+        fileMetadataCache.get("file-id", this::load);
+
+        // When
+        fileMetadataCache.onFileChanged(new FileChangedEvent("file-id"));
+        fileMetadataCache.get("file-id", this::load);
+
+        // Then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getShouldNotKeepEntriesPastFileExpiry() {
+        // Given
+        FileMetadataResponse expired = FileMetadataResponse.builder()
+                .fileId("file-id")
+                .expiryDate(LocalDateTime.now().minusMinutes(1));
+
+        // When
+        fileMetadataCache.get("file-id", id -> {
+            loads.incrementAndGet();
+            return expired;
+        });
+        fileMetadataCache.get("file-id", this::load);
+
+        // Then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getShouldNotCacheMissingFiles() {
+        // When
+        assertNull(fileMetadataCache.get("missing", id -> null));
+
+        // Then
+        assertEquals(0, fileMetadataCache.size());
+    }
+
+    @Test
+    void getShouldNotCacheFailedLoads() {
+        // When
+        assertThrows(IllegalStateException.class, () -> fileMetadataCache.get("file-id", id -> {
+            throw new IllegalStateException("Database unavailable");
+        }));
+        fileMetadataCache.get("file-id", this::load);
+
+        // Then
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getShouldShareInFlightLoadWithConcurrentCallers() throws Exception {
+        // Given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FileMetadataResponse> first = executor.submit(() -> fileMetadataCache.get("file-id", id -> {
+                loading.countDown();
+                try {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return load(id);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // When
+            Future<FileMetadataResponse> second = executor.submit(() -> fileMetadataCache.get("file-id", this::load));
+            release.countDown();
+
+            // Then
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FileMetadataResponse load(String fileId) {
+        loads.incrementAndGet();
+        return FileMetadataResponse.builder()
+                .fileId(fileId)
+                .originalFileName("report.pdf")
+                .fileSize(100);
+    }
+}
@@ -0,0 +1,138 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.model.FileData;
+import com.sharex.repository.FileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class FileServiceTest {
+
+    private static final String FILE_ID = "file-id";
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private ContentService contentService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void deleteShouldReleaseWhatTheRowHeldWhenDeleted() throws IOException {
+        // Given
+        FileData loaded = fileData();
+        FileData current = fileData();
+        current.setPreviewDigest("preview-digest");
+        current.setPreviewKey("preview-key");
+        when(fileRepository.findByIdForUpdate(FILE_ID)).thenReturn(Optional.of(current));
+        when(fileRepository.deleteByFileId(FILE_ID)).thenReturn(1);
+        when(contentService.release("content-digest", "storage-key")).thenReturn(true);
+
+        // When
+        long reclaimed = fileService.deleteFile(loaded);
+
+        // Then
+        assertEquals(512, reclaimed);
+        verify(contentService).release("content-digest", "storage-key");
+        // The preview was stored after the caller loaded the file
+        verify(contentService).release("preview-digest", "preview-key");
+        verify(eventPublisher).publishEvent(any(FileChangedEvent.class));
+    }
+
+    @Test
+    void deleteShouldNotCountContentStillSharedWithOtherFiles() throws IOException {
+        // Given
+        when(fileRepository.findByIdForUpdate(FILE_ID)).thenReturn(Optional.of(fileData()));
+        when(fileRepository.deleteByFileId(FILE_ID)).thenReturn(1);
+        when(contentService.release("content-digest", "storage-key")).thenReturn(false);
+
+        // When
+        long reclaimed = fileService.deleteFile(fileData());
+
+        // Then
+        assertEquals(0, reclaimed);
+    }
+
+    @Test
+    void deleteOfFileAlreadyGoneShouldNotReleaseAnything() throws IOException {
+        // Given
+        when(fileRepository.findByIdForUpdate(FILE_ID)).thenReturn(Optional.empty());
+
+        // When
+        long reclaimed = fileService.deleteFile(fileData());
+
+        // Then
+        assertEquals(-1, reclaimed);
+        verify(fileRepository, never()).deleteByFileId(FILE_ID);
+        verifyNoInteractions(contentService, eventPublisher);
+    }
+
+    @Test
+    void contentOverTheCompressionLimitShouldBeStoredUncompressed() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileService, "compressionEnabled", true);
+        ReflectionTestUtils.setField(fileService, "compressionMaxSize", DataSize.ofBytes(8));
+        when(contentService.store(any(InputStream.class), anyBoolean()))
+                .thenReturn(new ContentBlob("content-digest", "storage-key", 10));
+
+        // When
+        UploadOptions options = new UploadOptions();
+        options.setUserId("user-id");
+        fileService.storeFile(new ByteArrayInputStream(new byte[8]), 8, "small.txt", options);
+        options.setCompress(true);
+        fileService.storeFile(new ByteArrayInputStream(new byte[10]), 10, "large.txt", options);
+
+        // Then
+        InOrder inOrder = inOrder(contentService);
+        inOrder.verify(contentService).store(any(InputStream.class), eq(true));
+        inOrder.verify(contentService).store(any(InputStream.class), eq(false));
+    }
+
+    private static FileData fileData() {
+        FileData fileData = new FileData(FILE_ID, "report.pdf", "storage-key", 1024, "user-id");
+        fileData.setContentDigest("content-digest");
+        fileData.setStoredSizeBytes(512L);
+        return fileData;
+    }
+}
@@ -0,0 +1,87 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    void frequencyShouldCountIncrementsUpToSaturation() {
+        // Given
+        FrequencySketch sketch = new FrequencySketch(16, Runnable::run);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            sketch.increment("warm");
+        }
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("hot");
+        }
+
+        // Then
+        assertEquals(3, sketch.frequency("warm"));
+        assertEquals(15, sketch.frequency("hot"));
+    }
+
+    @Test
+    void agingShouldHalveCountersOnTheAgingExecutorOnlyOnce() {
+        // Given
+        List<Runnable> aging = new ArrayList<>();
+        FrequencySketch sketch = new FrequencySketch(16, aging::add);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+
+        // When
+        for (int i = 0; i < 1000 && aging.isEmpty(); i++) {
+            sketch.increment("key-" + i);
+        }
+        int before = sketch.frequency("hot");
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("more-" + i);
+        }
+
+        // Then
+        assertEquals(1, aging.size());
+        assertEquals(before, sketch.frequency("hot"));
+        aging.get(0).run();
+        assertEquals(before / 2, sketch.frequency("hot"));
+    }
+
+    @Test
+    void concurrentIncrementsShouldNotBeLost() throws InterruptedException {
+        // Given
+        FrequencySketch sketch = new FrequencySketch(16, Runnable::run);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                sketch.increment("shared");
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(threads, sketch.frequency("shared"));
+    }
+}
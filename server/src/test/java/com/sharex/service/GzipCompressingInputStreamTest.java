@@ -0,0 +1,78 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GzipCompressingInputStreamTest {
+
+    @Test
+    void outputShouldDecodeToTheSource() throws IOException {
+        // Given
+        byte[] source = "The quick brown fox jumps over the lazy dog. ".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        byte[] encoded;
+        long uncompressedSize;
+        try (GzipCompressingInputStream gzip = new GzipCompressingInputStream(new ByteArrayInputStream(source),
+                Deflater.BEST_SPEED)) {
+            encoded = gzip.readAllBytes();
+            uncompressedSize = gzip.getUncompressedSize();
+        }
+
+        // Then
+        assertArrayEquals(source, decode(encoded));
+        assertEquals(source.length, uncompressedSize);
+        assertTrue(encoded.length < source.length / 10);
+    }
+
+    @Test
+    void sourceLargerThanTheBufferShouldSurviveByteWiseReads() throws IOException {
+        // Given
+        byte[] source = new byte[200 * 1024];
+        new Random(42).nextBytes(source);
+
+        // When
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (GzipCompressingInputStream gzip = new GzipCompressingInputStream(new ByteArrayInputStream(source),
+                Deflater.BEST_SPEED)) {
+            int b;
+            while ((b = gzip.read()) != -1) {
+                encoded.write(b);
+            }
+        }
+
+        // Then
+        assertArrayEquals(source, decode(encoded.toByteArray()));
+    }
+
+    @Test
+    void emptySourceShouldGiveAValidEmptyMember() throws IOException {
+        // When
+        byte[] encoded;
+        try (GzipCompressingInputStream gzip = new GzipCompressingInputStream(new ByteArrayInputStream(new byte[0]),
+                Deflater.BEST_SPEED)) {
+            encoded = gzip.readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(new byte[0], decode(encoded));
+    }
+
+    private static byte[] decode(byte[] encoded) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.sharex.service;
+
+import com.sharex.storage.BlobLocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HotContentCacheTest {
+
+    @TempDir
+    Path root;
+
+    private HotContentCache hotContentCache;
+
+    @BeforeEach
+    void setUp() {
+        hotContentCache = new HotContentCache(DataSize.ofBytes(16), DataSize.ofBytes(16));
+    }
+
+    @Test
+    void getOrLoadShouldReturnCachedBodyAsDirectReadOnlyBuffer() throws IOException {
+        // Given
+        BlobLocation location = write("hot", "0123456789");
+        hotContentCache.getOrLoad("hot", location);
+
+        // When
+        Optional<ByteBuffer> cached = hotContentCache.getOrLoad("hot", location);
+
+        // Then
+        assertTrue(cached.isPresent());
+        assertTrue(cached.get().isDirect());
+        assertTrue(cached.get().isReadOnly());
+        assertEquals("0123456789", StandardCharsets.US_ASCII.decode(cached.get()).toString());
+        assertEquals(1, hotContentCache.getHitCount());
+    }
+
+    @Test
+    void getOrLoadShouldNotLetOneOffDownloadEvictHotEntry() throws IOException {
+        // Given
+        BlobLocation hot = write("hot", "0123456789");
+        for (int i = 0; i < 5; i++) {
+            hotContentCache.getOrLoad("hot", hot);
+        }
+        BlobLocation oneOff = write("one-off", "abcdefghij");
+
+        // When
+        Optional<ByteBuffer> result = hotContentCache.getOrLoad("one-off", oneOff);
+
+        // Then
+        assertTrue(result.isEmpty());
+        assertTrue(hotContentCache.getOrLoad("hot", hot).isPresent());
+        assertEquals(10, hotContentCache.getUsedBytes());
+    }
+
+    @Test
+    void getOrLoadShouldEvictWhenCandidateBecomesHotter() throws IOException {
+        // Given
+        BlobLocation old = write("old", "0123456789");
+        hotContentCache.getOrLoad("old", old);
+        BlobLocation rising = write("rising", "abcdefghij");
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            hotContentCache.getOrLoad("rising", rising);
+        }
+
+        // Then
+        assertEquals(1, hotContentCache.getEntryCount());
+        assertTrue(hotContentCache.getOrLoad("rising", rising).isPresent());
+    }
+
+    @Test
+    void invalidateShouldReleaseBudget() throws IOException {
+        // Given
+        hotContentCache.getOrLoad("hot", write("hot", "0123456789"));
+
+        // When
+        hotContentCache.invalidate("hot");
+
+        // Then
+        assertEquals(0, hotContentCache.getUsedBytes());
+        assertEquals(0, hotContentCache.getEntryCount());
+    }
+
+    @Test
+    void getOrLoadShouldNotCacheBodyInvalidatedDuringLoad() throws IOException {
+        // Given
+        HotContentCache racingCache = new HotContentCache(DataSize.ofBytes(16), DataSize.ofBytes(16)) {
+            @Override
+            ByteBuffer load(BlobLocation location) throws IOException {
+                ByteBuffer loaded = super.load(location);
+                // The blob is deleted while its body is being read
+                invalidate("deleted");
+                return loaded;
+            }
+        };
+        BlobLocation location = write("deleted", "0123456789");
+
+        // When
+        Optional<ByteBuffer> result = racingCache.getOrLoad("deleted", location);
+
+        // Then
+        assertTrue(result.isEmpty());
+        assertEquals(0, racingCache.getEntryCount());
+        assertEquals(0, racingCache.getUsedBytes());
+    }
+
+    private BlobLocation write(String name, String content) throws IOException {
+        Path path = Files.writeString(root.resolve(name), content, StandardCharsets.US_ASCII);
+        return new BlobLocation(path, 0, content.length());
+    }
+}
@@ -0,0 +1,191 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LegacyContentMigratorTest {
+
+    @Mock
+    private ContentService contentService;
+
+    private JdbcDataSource dataSource;
+
+    private LegacyContentMigrator migrator;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            // The files table as it was before content moved to the blob store
+            statement.execute("CREATE TABLE files (file_id VARCHAR(36) PRIMARY KEY, storage_key VARCHAR(40), "
+                    + "size_bytes BIGINT, content_digest VARCHAR(64), content VARBINARY(1024))");
+        }
+
+        migrator = new LegacyContentMigrator();
+        ReflectionTestUtils.setField(migrator, "dataSource", dataSource);
+        ReflectionTestUtils.setField(migrator, "contentService", contentService);
+        ReflectionTestUtils.setField(migrator, "enabled", true);
+    }
+
+    @Test
+    void runShouldMoveLegacyContentIntoBlobStore() throws Exception {
+        // Given
+        insert("file-1", "hello");
+        insert("file-2", "world");
+        when(contentService.store(any(InputStream.class))).thenAnswer(invocation -> stored(invocation.getArgument(0)));
+
+        // When
+        migrator.run(null);
+
+        // Then
+        assertMigrated("file-1", "hello");
+        assertMigrated("file-2", "world");
+    }
+
+    @Test
+    void secondRunShouldFindNothingLeftToMigrate() throws Exception {
+        // Given
+        insert("file-1", "hello");
+        when(contentService.store(any(InputStream.class))).thenAnswer(invocation -> stored(invocation.getArgument(0)));
+        migrator.run(null);
+
+        // When
+        migrator.run(null);
+
+        // Then
+        verify(contentService, times(1)).store(any(InputStream.class));
+        assertMigrated("file-1", "hello");
+    }
+
+    @Test
+    void failedFileShouldBeLeftForNextRunWithoutStoppingTheOthers() throws Exception {
+        // Given
+        insert("file-1", "hello");
+        insert("file-2", "broken");
+        insert("file-3", "world");
+        when(contentService.store(any(InputStream.class))).thenAnswer(invocation -> {
+            ContentBlob blob = stored(invocation.getArgument(0));
+            if ("key-broken".equals(blob.getStorageKey())) {
+                throw new IOException("Blob store unavailable");
+            }
+            return blob;
+        });
+
+        // When
+        migrator.run(null);
+
+        // Then
+        assertMigrated("file-1", "hello");
+        assertMigrated("file-3", "world");
+        assertPending("file-2");
+
+        // And when the blob store is back
+        doAnswer(invocation -> stored(invocation.getArgument(0))).when(contentService).store(any(InputStream.class));
+        migrator.run(null);
+        assertMigrated("file-2", "broken");
+    }
+
+    @Test
+    void failedUpdateShouldReleaseStoredContentAndKeepTheRow() throws Exception {
+        // Given
+        insert("file-1", "hello");
+        // Longer than the storage_key column, so the update after storing fails
+        String tooLongKey = "k".repeat(41);
+        when(contentService.store(any(InputStream.class))).thenReturn(new ContentBlob("digest", tooLongKey, 5));
+
+        // When
+        migrator.run(null);
+
+        // Then
+        verify(contentService).release("digest", tooLongKey);
+        assertPending("file-1");
+    }
+
+    @Test
+    void disabledMigratorShouldNotTouchTheDatabase() throws Exception {
+        // Given
+        insert("file-1", "hello");
+        ReflectionTestUtils.setField(migrator, "enabled", false);
+
+        // When
+        migrator.run(null);
+
+        // Then
+        verify(contentService, never()).store(any(InputStream.class));
+        verify(contentService, never()).release(anyString(), anyString());
+        assertPending("file-1");
+    }
+
+    private void insert(String fileId, String content) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO files (file_id, content) VALUES (?, ?)")) {
+            statement.setString(1, fileId);
+            statement.setBytes(2, content.getBytes(StandardCharsets.UTF_8));
+            statement.executeUpdate();
+        }
+    }
+
+    private static ContentBlob stored(InputStream in) throws IOException {
+        String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        return new ContentBlob("digest-" + content, "key-" + content, content.length());
+    }
+
+    private void assertMigrated(String fileId, String content) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT storage_key, size_bytes, content_digest, content FROM files WHERE file_id = ?")) {
+            statement.setString(1, fileId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                assertEquals("key-" + content, rs.getString("storage_key"));
+                assertEquals(content.length(), rs.getLong("size_bytes"));
+                assertEquals("digest-" + content, rs.getString("content_digest"));
+                assertNull(rs.getBytes("content"));
+            }
+        }
+    }
+
+    private void assertPending(String fileId) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT storage_key, content FROM files WHERE file_id = ?")) {
+            statement.setString(1, fileId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                assertNull(rs.getString("storage_key"));
+                assertNotNull(rs.getBytes("content"));
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MimeTypeDetectorTest {
+
+    @Test
+    void signatureShouldWinOverFileName() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13};
+
+        assertEquals("image/png", MimeTypeDetector.detect(png, "holiday.txt"));
+    }
+
+    @Test
+    void zipContainerShouldBeNamedByExtension() {
+        byte[] zip = {'P', 'K', 0x03, 0x04, 20, 0};
+
+        assertEquals("application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+                MimeTypeDetector.detect(zip, "Report.DOCX"));
+        assertEquals("application/zip", MimeTypeDetector.detect(zip, "archive"));
+    }
+
+    @Test
+    void textShouldBeNamedByExtension() {
+        byte[] json = "{\"za\u017c\u00f3\u0142\u0107\": 1}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("application/json", MimeTypeDetector.detect(json, "data.json"));
+        assertEquals("text/plain", MimeTypeDetector.detect(json, "data.bin"));
+        assertTrue(MimeTypeDetector.isTextual("application/json"));
+    }
+
+    @Test
+    void textCutMidCharacterBySampleShouldStillBeText() {
+        // Given
+        byte[] head = new byte[MimeTypeDetector.SNIFF_LENGTH];
+        Arrays.fill(head, (byte) 'a');
+        head[head.length - 1] = (byte) 0xc5;
+
+        // When & Then
+        assertEquals("text/plain", MimeTypeDetector.detect(head, "notes"));
+    }
+
+    @Test
+    void binaryShouldFallBackToOctetStream() {
+        byte[] binary = {0x01, 0x00, (byte) 0xfe, 0x42};
+
+        assertEquals(MimeTypeDetector.OCTET_STREAM, MimeTypeDetector.detect(binary, "data.txt"));
+        assertEquals(MimeTypeDetector.OCTET_STREAM, MimeTypeDetector.detect(new byte[0], "empty.txt"));
+        assertFalse(MimeTypeDetector.isTextual(MimeTypeDetector.OCTET_STREAM));
+    }
+}
@@ -0,0 +1,72 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PasswordHashingServiceTest {
+
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    void encodeAndMatchesShouldRunBcryptOnThePool() {
+        // Given
+        passwordHashingService = new PasswordHashingService(2, 4, Duration.ofSeconds(1));
+
+        // When
+        String hash = passwordHashingService.encode("secret");
+
+        // Then
+        assertTrue(passwordHashingService.matches("secret", hash));
+        assertFalse(passwordHashingService.matches("wrong", hash));
+        assertEquals(3, passwordHashingService.getCompletedCount());
+        assertTrue(passwordHashingService.getTotalHashNanos() > 0);
+    }
+
+    @Test
+    void saturatedPoolShouldRejectInsteadOfQueueingForever() throws Exception {
+        // Given
+        passwordHashingService = new PasswordHashingService(1, 1, Duration.ofSeconds(2));
+        String hash = passwordHashingService.encode("secret");
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        // When
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> {
+                try {
+                    return passwordHashingService.matches("secret", hash);
+                } catch (PasswordHashingOverloadedException e) {
+                    assertEquals(2, e.getRetryAfterSeconds());
+                    return false;
+                }
+            }));
+        }
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                accepted++;
+            }
+        }
+        callers.shutdown();
+
+        // Then
+        assertTrue(accepted >= 1);
+        assertEquals(8, accepted + passwordHashingService.getRejectedCount());
+    }
+}
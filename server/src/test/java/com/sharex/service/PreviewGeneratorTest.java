@@ -0,0 +1,131 @@
+package com.sharex.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreviewGeneratorTest {
+
+    private PreviewGenerator previewGenerator;
+
+    @BeforeEach
+    void setUp() {
+        previewGenerator = new PreviewGenerator();
+        ReflectionTestUtils.setField(previewGenerator, "textSize", DataSize.ofBytes(5));
+        ReflectionTestUtils.setField(previewGenerator, "imageSize", 320);
+        ReflectionTestUtils.setField(previewGenerator, "maxImagePixels", 50_000_000L);
+        ReflectionTestUtils.setField(previewGenerator, "maxPdfSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(previewGenerator, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    void textPreviewShouldDropCharacterCutBySizeLimit() throws IOException {
+        // Given
+        byte[] text = "abcd\u017c and more".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        Optional<Preview> preview = previewGenerator.generate("text/plain", new ByteArrayInputStream(text));
+
+        // Then
+        assertTrue(preview.isPresent());
+        assertArrayEquals("abcd".getBytes(StandardCharsets.UTF_8), preview.get().getContent());
+        assertEquals("text/plain; charset=UTF-8", preview.get().getContentType());
+    }
+
+    @Test
+    void opaqueImageShouldBeScaledToFitAsJpeg() throws IOException {
+        // Given
+        byte[] png = png(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB));
+
+        // When
+        Optional<Preview> preview = previewGenerator.generate("image/png", new ByteArrayInputStream(png));
+
+        // Then
+        assertTrue(preview.isPresent());
+        assertEquals("image/jpeg", preview.get().getContentType());
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(preview.get().getContent()));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+    }
+
+    @Test
+    void transparentImageShouldStayPng() throws IOException {
+        byte[] png = png(new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB));
+
+        Optional<Preview> preview = previewGenerator.generate("image/png", new ByteArrayInputStream(png));
+
+        assertTrue(preview.isPresent());
+        assertEquals("image/png", preview.get().getContentType());
+    }
+
+    @Test
+    void imageOverPixelLimitOrCorruptShouldHaveNoPreview() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(previewGenerator, "maxImagePixels", 100L);
+        byte[] png = png(new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB));
+        byte[] corrupt = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 1, 2, 3};
+
+        // When & Then
+        assertFalse(previewGenerator.generate("image/png", new ByteArrayInputStream(png)).isPresent());
+        assertFalse(previewGenerator.generate("image/png", new ByteArrayInputStream(corrupt)).isPresent());
+        assertFalse(previewGenerator.supports("application/zip"));
+        assertTrue(previewGenerator.supports("application/pdf"));
+    }
+
+    @Test
+    void pdfShouldBeSummarizedFromFirstPage() throws IOException {
+        // Given
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            document.getDocumentInformation().setTitle("Quarterly report");
+            document.save(pdf);
+        }
+
+        // When
+        Optional<Preview> preview = previewGenerator.generate("application/pdf",
+                new ByteArrayInputStream(pdf.toByteArray()));
+
+        // Then
+        assertTrue(preview.isPresent());
+        assertEquals("application/json", preview.get().getContentType());
+        JsonNode summary = new ObjectMapper().readTree(preview.get().getContent());
+        assertEquals(2, summary.get("pageCount").asInt());
+        assertEquals(595, summary.get("width").asInt());
+        assertEquals(841, summary.get("height").asInt());
+        assertEquals("Quarterly report", summary.get("title").asText());
+    }
+
+    @Test
+    void malformedPdfShouldHaveNoPreview() throws IOException {
+        byte[] pdf = "%PDF-1.7 truncated".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(previewGenerator.generate("application/pdf", new ByteArrayInputStream(pdf)).isPresent());
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
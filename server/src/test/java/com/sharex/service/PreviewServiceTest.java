@@ -0,0 +1,123 @@
+package com.sharex.service;
+
+import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PreviewServiceTest {
+
+    @Mock
+    private ContentService contentService;
+
+    @Mock
+    private UploadProcessingPipeline uploadProcessingPipeline;
+
+    private PreviewService previewService;
+
+    @BeforeEach
+    void setUp() {
+        previewService = new PreviewService(DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(previewService, "contentService", contentService);
+        ReflectionTestUtils.setField(previewService, "uploadProcessingPipeline", uploadProcessingPipeline);
+    }
+
+    @Test
+    void previewShouldBeReadFromStorageOnce() throws IOException {
+        // Given
+        FileData fileData = fileData(ProcessingStatus.COMPLETE);
+        fileData.setPreviewKey("preview-key");
+        fileData.setPreviewType("image/jpeg");
+        when(contentService.open("preview-key", null)).thenReturn(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+
+        // When
+        previewService.getPreview(fileData);
+        Optional<Preview> preview = previewService.getPreview(fileData);
+
+        // Then
+        assertTrue(preview.isPresent());
+        assertArrayEquals(new byte[] {1, 2, 3}, preview.get().getContent());
+        assertEquals("image/jpeg", preview.get().getContentType());
+        verify(contentService, times(1)).open("preview-key", null);
+        assertEquals(1, previewService.stats().hitCount());
+    }
+
+    @Test
+    void compressedPreviewShouldBeDecoded() throws IOException {
+        // Given
+        byte[] text = "hello".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(text);
+        }
+        FileData fileData = fileData(ProcessingStatus.COMPLETE);
+        fileData.setPreviewKey("storage-key");
+        fileData.setPreviewType("text/plain");
+        fileData.setPreviewEncoding("gzip");
+        when(contentService.open("storage-key", "gzip"))
+                .thenReturn(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+
+        // When
+        Optional<Preview> preview = previewService.getPreview(fileData);
+
+        // Then
+        assertTrue(preview.isPresent());
+        assertArrayEquals(text, preview.get().getContent());
+    }
+
+    @Test
+    void fileWithoutPreviewShouldNotTouchStorage() throws IOException {
+        assertFalse(previewService.getPreview(fileData(ProcessingStatus.COMPLETE)).isPresent());
+
+        verifyNoInteractions(contentService);
+    }
+
+    @Test
+    void fileFromBeforeThePipelineShouldBeStartedOnFirstRequest() {
+        // Given
+        FileData fileData = fileData(null);
+        when(uploadProcessingPipeline.startProcessing("file-id")).thenReturn(true);
+
+        // When & Then
+        assertTrue(previewService.isPreviewPending(fileData));
+        verify(uploadProcessingPipeline).startProcessing("file-id");
+    }
+
+    @Test
+    void finishedFileShouldNotBePending() {
+        assertFalse(previewService.isPreviewPending(fileData(ProcessingStatus.FAILED)));
+        assertTrue(previewService.isPreviewPending(fileData(ProcessingStatus.PENDING)));
+
+        verify(uploadProcessingPipeline, never()).startProcessing("file-id");
+    }
+
+    private static FileData fileData(ProcessingStatus status) {
+        FileData fileData = new FileData("file-id", "photo.png", "storage-key", 1024, "user-id");
+        fileData.setProcessingStatus(status);
+        return fileData;
+    }
+}
@@ -0,0 +1,148 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionNearCacheTest {
+
+    private static final long VERSION = 1_700_000_000_000L;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+    }
+
+    @Test
+    void getShouldServeFreshEntryWithoutDatabase() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ofMinutes(1));
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+
+        // When
+        SessionNearCache.CachedSession cached = cache.get("session-id");
+
+        // Then
+        assertNotNull(cached);
+        assertEquals("user-id", cached.getUserId());
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class), any());
+    }
+
+    @Test
+    void getShouldDropEntryWhenSessionNoLongerExists() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ZERO);
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("session-id"))).thenReturn(List.of());
+
+        // When & Then
+        assertNull(cache.get("session-id"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void getShouldKeepEntryWhileVersionIsUnchanged() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ZERO);
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("session-id"))).thenReturn(List.of(VERSION));
+
+        // When & Then
+        assertNotNull(cache.get("session-id"));
+        assertEquals(1, cache.getValidationCount());
+    }
+
+    @Test
+    void getShouldDropEntryChangedOnAnotherNode() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ZERO);
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("session-id")))
+                .thenReturn(List.of(VERSION + 5000));
+
+        // When & Then
+        assertNull(cache.get("session-id"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void flushedTouchShouldNotCountAsChangeOnAnotherNode() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ZERO);
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("session-id"))).thenReturn(List.of(VERSION));
+        cache.get("session-id");
+        cache.flushTouches();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        long touchedAt = (Long) batch.getValue().get(0)[0];
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("session-id"))).thenReturn(List.of(touchedAt));
+
+        // When & Then
+        assertNotNull(cache.get("session-id"));
+    }
+
+    @Test
+    void flushTouchesShouldWriteOneRowPerSession() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ofMinutes(1));
+        cache.put("a", "user-a", "a", 1800, VERSION);
+        cache.put("b", "user-b", "b", 1800, VERSION);
+        for (int i = 0; i < 10; i++) {
+            cache.get("a");
+            cache.get("b");
+        }
+
+        // When
+        cache.flushTouches();
+        cache.flushTouches();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertEquals(2, batch.getValue().size());
+    }
+
+    @Test
+    void evictShouldForgetPendingTouch() {
+        // Given
+        SessionNearCache cache = newCache(Duration.ofMinutes(1));
+        cache.put("session-id", "user-id", "user", 1800, VERSION);
+        cache.get("session-id");
+
+        // When
+        cache.evict("session-id");
+        cache.flushTouches();
+
+        // Then
+        assertNull(cache.get("session-id"));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    private SessionNearCache newCache(Duration ttl) {
+        SessionNearCache cache = new SessionNearCache(100, ttl, Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+        return cache;
+    }
+}
@@ -0,0 +1,73 @@
+package com.sharex.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    void advanceShouldReturnEntriesOnceTheirDeadlinePassed() {
+        // Given
+        TimingWheel wheel = new TimingWheel(1000, 8, 2, 0);
+        wheel.schedule("a", 3000);
+        wheel.schedule("b", 5000);
+
+        // When
+        List<String> early = wheel.advance(2000);
+        List<String> first = wheel.advance(3000);
+        List<String> second = wheel.advance(6000);
+
+        // Then
+        assertTrue(early.isEmpty());
+        assertEquals(List.of("a"), first);
+        assertEquals(List.of("b"), second);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void entriesOnHigherLevelsShouldCascadeDown() {
+        // Given
+        TimingWheel wheel = new TimingWheel(1000, 8, 3, 0);
+        wheel.schedule("far", 50_000);
+
+        // When
+        List<String> before = wheel.advance(49_000);
+        List<String> due = wheel.advance(50_000);
+
+        // Then
+        assertTrue(before.isEmpty());
+        assertEquals(List.of("far"), due);
+    }
+
+    @Test
+    void scheduleShouldRejectDeadlinesBeyondHorizon() {
+        // Given
+        TimingWheel wheel = new TimingWheel(1000, 8, 2, 0);
+
+        // When
+        boolean accepted = wheel.schedule("too-far", wheel.horizonMs() + 1000);
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesShouldFireOnNextTick() {
+        // Given
+        TimingWheel wheel = new TimingWheel(1000, 8, 2, 10_000);
+        wheel.schedule("late", 1000);
+        wheel.schedule("late", 1000);
+
+        // When
+        List<String> due = wheel.advance(11_000);
+
+        // Then
+        assertEquals(List.of("late"), due);
+    }
+}
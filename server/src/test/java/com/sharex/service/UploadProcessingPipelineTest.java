@@ -0,0 +1,255 @@
+package com.sharex.service;
+
+import com.sharex.model.ContentBlob;
+import com.sharex.model.FileData;
+import com.sharex.model.ProcessingStage;
+import com.sharex.model.ProcessingStatus;
+import com.sharex.model.ScanResult;
+import com.sharex.repository.FileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UploadProcessingPipelineTest {
+
+    private static final String FILE_ID = "file-id";
+    // SHA-256 of "hello"
+    private static final String HELLO_DIGEST = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private ContentService contentService;
+
+    @Mock
+    private PreviewGenerator previewGenerator;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private VirusScanner virusScanner;
+
+    @InjectMocks
+    private UploadProcessingPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pipeline, "threads", 1);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        ReflectionTestUtils.setField(pipeline, "maxAttempts", 5);
+        ReflectionTestUtils.setField(pipeline, "retryBackoff", Duration.ofSeconds(10));
+        pipeline.start();
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void matchingChecksumShouldAdvanceToScan() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.CHECKSUM);
+        fileData.setContentDigest(HELLO_DIGEST);
+        when(contentService.open(fileData.getStorageKey(), null)).thenReturn(content("hello"));
+        when(fileRepository.advanceProcessing(eq(FILE_ID), eq(ProcessingStage.CHECKSUM),
+                eq(ProcessingStage.VIRUS_SCAN), eq(ProcessingStatus.PENDING), any())).thenReturn(1);
+
+        // When
+        ProcessingStage next = pipeline.process(FILE_ID, ProcessingStage.CHECKSUM);
+
+        // Then
+        assertEquals(ProcessingStage.VIRUS_SCAN, next);
+        verify(fileRepository).setChecksumVerified(FILE_ID, true);
+        verify(eventPublisher).publishEvent(any(FileChangedEvent.class));
+        assertEquals(1, pipeline.getCompletedCount(ProcessingStage.CHECKSUM));
+    }
+
+    @Test
+    void infectedFileShouldCompleteWithoutParsing() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.VIRUS_SCAN);
+        when(contentService.open(fileData.getStorageKey(), null)).thenReturn(content("X5O!P%@AP"));
+        when(virusScanner.scan(any(), eq(fileData.getOriginalFileName()))).thenReturn(ScanResult.INFECTED);
+        when(fileRepository.advanceProcessing(eq(FILE_ID), eq(ProcessingStage.VIRUS_SCAN), isNull(),
+                eq(ProcessingStatus.COMPLETE), isNull())).thenReturn(1);
+
+        // When
+        ProcessingStage next = pipeline.process(FILE_ID, ProcessingStage.VIRUS_SCAN);
+
+        // Then
+        assertNull(next);
+        verify(fileRepository).setScanResult(FILE_ID, ScanResult.INFECTED);
+        verifyNoInteractions(previewGenerator);
+    }
+
+    @Test
+    void failedStageShouldBeRetriedLaterWithBackoff() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.MIME_TYPE);
+        fileData.setProcessingAttempts(1);
+        when(contentService.open(fileData.getStorageKey(), null)).thenThrow(new IOException("Disk unavailable"));
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        ProcessingStage next = pipeline.process(FILE_ID, ProcessingStage.MIME_TYPE);
+
+        // Then
+        assertNull(next);
+        verify(fileRepository).recordProcessingFailure(eq(FILE_ID), eq(ProcessingStage.MIME_TYPE),
+                eq(ProcessingStatus.PENDING), argThat(at -> !at.isBefore(before.plusSeconds(20))), anyString());
+        assertEquals(1, pipeline.getFailedCount(ProcessingStage.MIME_TYPE));
+    }
+
+    @Test
+    void lastFailedAttemptShouldMarkFileFailed() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.MIME_TYPE);
+        fileData.setProcessingAttempts(4);
+        when(contentService.open(fileData.getStorageKey(), null)).thenThrow(new IOException("Disk unavailable"));
+
+        // When
+        pipeline.process(FILE_ID, ProcessingStage.MIME_TYPE);
+
+        // Then
+        verify(fileRepository).recordProcessingFailure(eq(FILE_ID), eq(ProcessingStage.MIME_TYPE),
+                eq(ProcessingStatus.FAILED), isNull(), anyString());
+    }
+
+    @Test
+    void previewShouldBeReleasedWhenStageWasFinishedElsewhere() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.PREVIEW);
+        fileData.setMimeType("text/plain");
+        when(previewGenerator.supports("text/plain")).thenReturn(true);
+        when(contentService.open(fileData.getStorageKey(), null)).thenReturn(content("hello"));
+        when(previewGenerator.generate(eq("text/plain"), any()))
+                .thenReturn(Optional.of(new Preview(new byte[] {'h'}, "text/plain; charset=UTF-8")));
+        when(contentService.store(any())).thenReturn(new ContentBlob("preview-digest", "preview-key", 1));
+        when(fileRepository.advanceProcessing(eq(FILE_ID), eq(ProcessingStage.PREVIEW), isNull(),
+                eq(ProcessingStatus.COMPLETE), isNull())).thenReturn(0);
+
+        // When
+        ProcessingStage next = pipeline.process(FILE_ID, ProcessingStage.PREVIEW);
+
+        // Then
+        assertNull(next);
+        verify(fileRepository, never()).setPreview(anyString(), anyString(), anyString(), anyString(), any());
+        verify(contentService).release("preview-digest", "preview-key");
+    }
+
+    @Test
+    void previewSharingTheCompressedFileBlobShouldKeepItsEncoding() throws IOException {
+        // Given
+        FileData fileData = pending(ProcessingStage.PREVIEW);
+        fileData.setMimeType("text/plain");
+        fileData.setContentDigest(HELLO_DIGEST);
+        fileData.setContentEncoding("gzip");
+        when(previewGenerator.supports("text/plain")).thenReturn(true);
+        when(contentService.open(fileData.getStorageKey(), "gzip")).thenReturn(content("hello"));
+        // A text file shorter than the preview limit previews as itself
+        when(previewGenerator.generate(eq("text/plain"), any()))
+                .thenReturn(Optional.of(new Preview("hello".getBytes(StandardCharsets.UTF_8), "text/plain")));
+        when(contentService.store(any()))
+                .thenReturn(new ContentBlob(HELLO_DIGEST, fileData.getStorageKey(), 5, 25, "gzip"));
+        when(fileRepository.advanceProcessing(eq(FILE_ID), eq(ProcessingStage.PREVIEW), isNull(),
+                eq(ProcessingStatus.COMPLETE), isNull())).thenReturn(1);
+
+        // When
+        pipeline.process(FILE_ID, ProcessingStage.PREVIEW);
+
+        // Then
+        verify(fileRepository).setPreview(FILE_ID, HELLO_DIGEST, fileData.getStorageKey(), "text/plain", "gzip");
+        verify(contentService, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void fileAlreadyPastStageShouldBeSkipped() {
+        // Given
+        FileData fileData = pending(ProcessingStage.MIME_TYPE);
+        fileData.setProcessingStatus(ProcessingStatus.COMPLETE);
+
+        // When
+        ProcessingStage next = pipeline.process(FILE_ID, ProcessingStage.MIME_TYPE);
+
+        // Then
+        assertNull(next);
+        verifyNoInteractions(contentService);
+    }
+
+    @Test
+    void fileFromBeforeThePipelineShouldBeStartedOnce() {
+        // Given
+        ReflectionTestUtils.setField(pipeline, "enabled", true);
+        when(fileRepository.startProcessing(eq(FILE_ID), eq(ProcessingStage.CHECKSUM), eq(ProcessingStatus.PENDING),
+                any())).thenReturn(1, 0);
+
+        // When
+        boolean first = pipeline.startProcessing(FILE_ID);
+        boolean second = pipeline.startProcessing(FILE_ID);
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        verify(eventPublisher, times(1)).publishEvent(any(FileChangedEvent.class));
+    }
+
+    @Test
+    void disabledPipelineShouldNotStartFiles() {
+        assertFalse(pipeline.startProcessing(FILE_ID));
+
+        verify(fileRepository, never()).startProcessing(anyString(), any(), any(), any());
+    }
+
+    private FileData pending(ProcessingStage stage) {
+        FileData fileData = new FileData(FILE_ID, "notes.txt", "storage-key", 5, "user-id");
+        fileData.setProcessingStatus(ProcessingStatus.PENDING);
+        fileData.setProcessingStage(stage);
+        fileData.setProcessingAttempts(0);
+        when(fileRepository.findById(FILE_ID)).thenReturn(Optional.of(fileData));
+        return fileData;
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,5 +1,6 @@
 package com.sharex.service;
 
+import com.sharex.dto.LoginRequest;
 import com.sharex.dto.RegisterRequest;
 import com.sharex.model.UserData;
 import com.sharex.repository.UserRepository;
@@ -9,7 +10,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -30,7 +30,7 @@ public class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @InjectMocks
     private UserService userService;
@@ -54,6 +54,7 @@ public class UserServiceTest {
 
         when(userRepository.findByUsername("newuser")).thenReturn(Optional.empty());
         when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.empty());
+        when(passwordHashingService.encode("password")).thenReturn("hashedpassword");
         when(userRepository.save(any(UserData.class))).thenReturn(testUser);
 
         // When
@@ -77,6 +78,18 @@ public class UserServiceTest {
         verify(userRepository, never()).save(any(UserData.class));
     }
 
+    @Test
+    void loginShouldPropagateOverloadWithoutCheckingPassword() {
+        // Given
+        LoginRequest request = new LoginRequest("testuser", "password");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(passwordHashingService.matches("password", "hashedpassword"))
+                .thenThrow(new PasswordHashingOverloadedException(1));
+
+        // When & Then
+        assertThrows(PasswordHashingOverloadedException.class, () -> userService.login(request));
+    }
+
     @Test
     void findByUsernameShouldReturnUserWhenExists() {
         // Given
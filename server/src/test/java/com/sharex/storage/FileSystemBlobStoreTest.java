@@ -0,0 +1,65 @@
+package com.sharex.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileSystemBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private FileSystemBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStore = new FileSystemBlobStore(root.toString(), DataSize.ofBytes(1024));
+    }
+
+    @Test
+    void writeShouldStoreContentLargerThanChunkSize() throws IOException {
+        // Given
+        byte[] content = new byte[10_000];
+        new Random(42).nextBytes(content);
+
+        // When
+        StoredBlob blob = blobStore.write(new ByteArrayInputStream(content));
+
+        // Then
+        assertNotNull(blob.getKey());
+        assertEquals(content.length, blob.getSize());
+        try (InputStream in = blobStore.open(blob.getKey())) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void deleteShouldRemoveStoredContent() throws IOException {
+        // Given
+        StoredBlob blob = blobStore.write(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+
+        // When
+        blobStore.delete(blob.getKey());
+
+        // Then
+        assertThrows(NoSuchFileException.class, () -> blobStore.open(blob.getKey()));
+    }
+
+    @Test
+    void openShouldRejectKeysOutsideTheStore() {
+        assertThrows(IllegalArgumentException.class, () -> blobStore.open("../../etc/passwd"));
+    }
+}
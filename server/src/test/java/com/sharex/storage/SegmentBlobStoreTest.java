@@ -0,0 +1,140 @@
+package com.sharex.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private SegmentBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStore = newStore();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        blobStore.close();
+    }
+
+    @Test
+    void writeShouldStoreSmallAndSpooledContent() throws IOException {
+        // Given
+        byte[] small = content(100, 1);
+        byte[] large = content(10_000, 2);
+
+        // When
+        StoredBlob smallBlob = blobStore.write(new ByteArrayInputStream(small));
+        StoredBlob largeBlob = blobStore.write(new ByteArrayInputStream(large));
+
+        // Then
+        assertEquals(large.length, largeBlob.getSize());
+        assertArrayEquals(small, read(smallBlob.getKey()));
+        assertArrayEquals(large, read(largeBlob.getKey()));
+        BlobLocation location = blobStore.locate(largeBlob.getKey()).orElseThrow();
+        assertEquals(large.length, location.getLength());
+        assertTrue(location.getOffset() >= SegmentBlobStore.HEADER_SIZE);
+    }
+
+    @Test
+    void deleteShouldSurviveReopen() throws IOException {
+        // Given
+        StoredBlob kept = blobStore.write(new ByteArrayInputStream(content(500, 3)));
+        StoredBlob deleted = blobStore.write(new ByteArrayInputStream(content(500, 4)));
+        blobStore.delete(deleted.getKey());
+
+        // When
+        blobStore.close();
+        blobStore = newStore();
+
+        // Then
+        assertArrayEquals(content(500, 3), read(kept.getKey()));
+        assertThrows(NoSuchFileException.class, () -> blobStore.open(deleted.getKey()));
+    }
+
+    @Test
+    void reopenShouldDropTornTailWrite() throws IOException {
+        // Given
+        StoredBlob blob = blobStore.write(new ByteArrayInputStream(content(500, 5)));
+        blobStore.close();
+        try (FileChannel channel = FileChannel.open(root.resolve("segment-0000000000000001.log"),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x53, 0x58, 0x42}));
+        }
+
+        // When
+        blobStore = newStore();
+        StoredBlob next = blobStore.write(new ByteArrayInputStream(content(200, 6)));
+
+        // Then
+        assertArrayEquals(content(500, 5), read(blob.getKey()));
+        assertArrayEquals(content(200, 6), read(next.getKey()));
+    }
+
+    @Test
+    void compactShouldRewriteLiveBlobsOutOfMostlyDeadSegments() throws IOException {
+        // Given
+        StoredBlob live = blobStore.write(new ByteArrayInputStream(content(3_000, 7)));
+        for (int i = 0; i < 3; i++) {
+            StoredBlob dead = blobStore.write(new ByteArrayInputStream(content(3_000, 10 + i)));
+            blobStore.delete(dead.getKey());
+        }
+        blobStore.write(new ByteArrayInputStream(content(3_000, 20)));
+
+        // When
+        blobStore.compact();
+
+        // Then
+        assertEquals(1, blobStore.getCompactedSegmentCount());
+        assertTrue(blobStore.getReclaimedBytes() >= 2 * 3_000);
+        assertArrayEquals(content(3_000, 7), read(live.getKey()));
+
+        blobStore.close();
+        blobStore = newStore();
+        assertArrayEquals(content(3_000, 7), read(live.getKey()));
+    }
+
+    @Test
+    void openShouldRejectKeysOutsideTheStore() {
+        assertThrows(IllegalArgumentException.class, () -> blobStore.open("../../etc/passwd"));
+    }
+
+    private SegmentBlobStore newStore() throws IOException {
+        return new SegmentBlobStore(root.toString(), DataSize.ofKilobytes(12), DataSize.ofBytes(1024),
+                DataSize.ofBytes(512), 0.5, Duration.ZERO);
+    }
+
+    private byte[] read(String key) throws IOException {
+        try (InputStream in = blobStore.open(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] content(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}